@@ -0,0 +1,272 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.binding.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.fcrepo.apix.model.Extension;
+
+/**
+ * Class hierarchy of an ontology, compiled for binding extensions without a reasoner.
+ * <p>
+ * Named classes are assigned integer indexes, and the transitive closure of each class' superclasses (via
+ * {@code rdfs:subClassOf} and {@code owl:equivalentClass}) is kept as a {@link BitSet}. Each class is then mapped to a
+ * bitmap of the extensions that bind to it or to any of its superclasses, so binding a resource is an OR over the
+ * bitmaps of its asserted types.
+ * </p>
+ * <p>
+ * An extension cannot be compiled if membership in its binding class may be inferred by any other means; i.e. if its
+ * binding class is a superclass of a restriction or class expression, or of the domain or range of some property. Such
+ * extensions are {@link #uncompiled()}, and need to be bound by a reasoner.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+class ClassHierarchy {
+
+    static final URI RDFS_SUBCLASS_OF = URI.create("http://www.w3.org/2000/01/rdf-schema#subClassOf");
+
+    static final URI RDFS_DOMAIN = URI.create("http://www.w3.org/2000/01/rdf-schema#domain");
+
+    static final URI RDFS_RANGE = URI.create("http://www.w3.org/2000/01/rdf-schema#range");
+
+    static final URI RDFS_RESOURCE = URI.create("http://www.w3.org/2000/01/rdf-schema#Resource");
+
+    static final URI OWL_EQUIVALENT_CLASS = URI.create("http://www.w3.org/2002/07/owl#equivalentClass");
+
+    static final URI OWL_THING = URI.create("http://www.w3.org/2002/07/owl#Thing");
+
+    // Any named class defined by one of these is not simply the union of its subclasses
+    static final List<URI> CLASS_EXPRESSIONS = Arrays.asList(
+            URI.create("http://www.w3.org/2002/07/owl#intersectionOf"),
+            URI.create("http://www.w3.org/2002/07/owl#unionOf"),
+            URI.create("http://www.w3.org/2002/07/owl#complementOf"),
+            URI.create("http://www.w3.org/2002/07/owl#oneOf"));
+
+    private final Map<URI, Integer> index = new HashMap<>();
+
+    private final List<BitSet> superClasses = new ArrayList<>();
+
+    private final List<Extension> compiled = new ArrayList<>();
+
+    private final List<Extension> uncompiled = new ArrayList<>();
+
+    private BitSet[] bound = new BitSet[0];
+
+    private ClassHierarchy() {
+    }
+
+    /**
+     * A hierarchy that compiles none of the given extensions.
+     *
+     * @param extensions Candidate extensions.
+     * @return Class hierarchy where all extensions are uncompiled.
+     */
+    static ClassHierarchy uncompiled(final Collection<Extension> extensions) {
+        final ClassHierarchy hierarchy = new ClassHierarchy();
+        hierarchy.uncompiled.addAll(extensions);
+        return hierarchy;
+    }
+
+    /**
+     * Compile the class hierarchy of an ontology for the given extensions.
+     * <p>
+     * The ontology is given by its asserted statements with a given property, as from
+     * {@link org.fcrepo.apix.model.components.OntologyService#statementsOf}; i.e. entries of subject to object, where
+     * anything that is not a named resource is null.
+     * </p>
+     *
+     * @param statements Asserted statements of an ontology, including its imports closure, by property.
+     * @param extensions Candidate extensions.
+     * @return The compiled hierarchy.
+     */
+    static ClassHierarchy compile(final Function<URI, Collection<Map.Entry<URI, URI>>> statements,
+            final Collection<Extension> extensions) {
+        final ClassHierarchy hierarchy = new ClassHierarchy();
+
+        // Classes whose instances can be inferred by means other than subclass relationships
+        final BitSet inferable = new BitSet();
+
+        for (final Map.Entry<URI, URI> s : statements.apply(RDFS_SUBCLASS_OF)) {
+            if (s.getKey() != null && s.getValue() != null) {
+                hierarchy.subClassOf(s.getKey(), s.getValue());
+            } else if (s.getValue() != null) {
+                inferable.set(hierarchy.indexOf(s.getValue()));
+            }
+        }
+
+        for (final Map.Entry<URI, URI> s : statements.apply(OWL_EQUIVALENT_CLASS)) {
+            if (s.getKey() != null && s.getValue() != null) {
+                hierarchy.subClassOf(s.getKey(), s.getValue());
+                hierarchy.subClassOf(s.getValue(), s.getKey());
+            } else if (s.getKey() != null) {
+                inferable.set(hierarchy.indexOf(s.getKey()));
+            } else if (s.getValue() != null) {
+                inferable.set(hierarchy.indexOf(s.getValue()));
+            }
+        }
+
+        for (final URI property : Arrays.asList(RDFS_DOMAIN, RDFS_RANGE)) {
+            for (final Map.Entry<URI, URI> s : statements.apply(property)) {
+                if (s.getValue() != null) {
+                    inferable.set(hierarchy.indexOf(s.getValue()));
+                }
+            }
+        }
+
+        for (final URI property : CLASS_EXPRESSIONS) {
+            for (final Map.Entry<URI, URI> s : statements.apply(property)) {
+                if (s.getKey() != null) {
+                    inferable.set(hierarchy.indexOf(s.getKey()));
+                }
+            }
+        }
+
+        hierarchy.close();
+
+        // Anything that is a superclass of an inferable class is inferable too
+        final BitSet notCompilable = new BitSet();
+        for (int i = inferable.nextSetBit(0); i >= 0; i = inferable.nextSetBit(i + 1)) {
+            notCompilable.or(hierarchy.superClasses.get(i));
+        }
+
+        final Map<Integer, BitSet> boundDirectly = new HashMap<>();
+
+        for (final Extension extension : extensions) {
+            final URI bindingClass = extension.bindingClass();
+
+            if (bindingClass == null) {
+                // Will never bind
+                continue;
+            }
+
+            if (bindingClass.equals(OWL_THING) || bindingClass.equals(RDFS_RESOURCE)) {
+                hierarchy.uncompiled.add(extension);
+                continue;
+            }
+
+            final int classIndex = hierarchy.indexOf(bindingClass);
+
+            if (notCompilable.get(classIndex)) {
+                hierarchy.uncompiled.add(extension);
+            } else {
+                boundDirectly.computeIfAbsent(classIndex, k -> new BitSet()).set(hierarchy.compiled.size());
+                hierarchy.compiled.add(extension);
+            }
+        }
+
+        hierarchy.bound = new BitSet[hierarchy.superClasses.size()];
+        for (int c = 0; c < hierarchy.bound.length; c++) {
+            final BitSet extensionsOfClass = new BitSet();
+            final BitSet supers = hierarchy.superClasses.get(c);
+            for (int s = supers.nextSetBit(0); s >= 0; s = supers.nextSetBit(s + 1)) {
+                final BitSet direct = boundDirectly.get(s);
+                if (direct != null) {
+                    extensionsOfClass.or(direct);
+                }
+            }
+            hierarchy.bound[c] = extensionsOfClass;
+        }
+
+        return hierarchy;
+    }
+
+    /**
+     * Find the compiled extensions that bind to an instance of the given classes.
+     *
+     * @param types Asserted rdf:types of an instance.
+     * @return All compiled extensions bound to the instance.
+     */
+    List<Extension> bind(final Collection<URI> types) {
+        final BitSet matched = new BitSet();
+
+        for (final URI type : types) {
+            final Integer classIndex = index.get(type);
+            if (classIndex != null) {
+                matched.or(bound[classIndex]);
+            }
+        }
+
+        return matched.stream().mapToObj(compiled::get).collect(Collectors.toList());
+    }
+
+    /**
+     * Extensions whose binding could be determined from the class hierarchy.
+     *
+     * @return compiled extensions.
+     */
+    List<Extension> compiled() {
+        return Collections.unmodifiableList(compiled);
+    }
+
+    /**
+     * Extensions whose binding could not be determined from the class hierarchy alone.
+     *
+     * @return extensions which need to be bound by other means.
+     */
+    List<Extension> uncompiled() {
+        return Collections.unmodifiableList(uncompiled);
+    }
+
+    private int indexOf(final URI classURI) {
+        return index.computeIfAbsent(classURI, k -> {
+            final BitSet self = new BitSet();
+            self.set(superClasses.size());
+            superClasses.add(self);
+            return superClasses.size() - 1;
+        });
+    }
+
+    private void subClassOf(final URI subClass, final URI superClass) {
+        final int sub = indexOf(subClass);
+        superClasses.get(sub).set(indexOf(superClass));
+    }
+
+    // Transitive closure of the superclass relation
+    private void close() {
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (int c = 0; c < superClasses.size(); c++) {
+                final BitSet supers = superClasses.get(c);
+                final int before = supers.cardinality();
+
+                for (int s = supers.nextSetBit(0); s >= 0; s = supers.nextSetBit(s + 1)) {
+                    if (s != c) {
+                        supers.or(superClasses.get(s));
+                    }
+                }
+
+                changed |= supers.cardinality() != before;
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.binding.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.fcrepo.apix.model.Extension;
+import org.fcrepo.apix.model.Ontology;
+import org.fcrepo.apix.model.WebResource;
+import org.fcrepo.apix.model.components.SingleFlight;
+
+import org.apache.commons.io.IOUtils;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extension binding based on a pre-compiled class hierarchy.
+ * <p>
+ * Extensions whose binding classes are related to other classes only via {@code rdfs:subClassOf} or
+ * {@code owl:equivalentClass} are bound by looking up the asserted {@code rdf:type}s of a resource in a
+ * {@link ClassHierarchy} compiled from the union of the extensions' ontologies. No reasoner is involved. All other
+ * extensions (e.g. those whose binding class may be inferred from restrictions or property domains/ranges) are bound
+ * by the reasoning performed by {@link RuntimeExtensionBinding}.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+@Component(configurationPolicy = ConfigurationPolicy.REQUIRE)
+public class ClassHierarchyExtensionBinding extends RuntimeExtensionBinding {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClassHierarchyExtensionBinding.class);
+
+    private boolean compileHierarchy = false;
+
+    // Compiled hierarchies for a given set of extensions, keyed by generation and extension URIs
+    private final Map<List<Object>, ClassHierarchy> hierarchies = new ConcurrentHashMap<>();
+
+    // Hierarchies being compiled, keyed as above
+    private final SingleFlight<List<Object>, ClassHierarchy> compiling = new SingleFlight<>();
+
+    /**
+     * Determine whether class hierarchies shall be compiled.
+     * <p>
+     * If false, all binding is performed by reasoning, exactly as {@link RuntimeExtensionBinding}.
+     * </p>
+     *
+     * @param compile true if class hierarchies are to be compiled.
+     */
+    public void setCompileHierarchy(final boolean compile) {
+        this.compileHierarchy = compile;
+    }
+
+    @Override
+    public Collection<Extension> getExtensionsFor(final WebResource resource,
+            final Collection<Extension> extensions) {
+
+        if (!compileHierarchy || extensions.isEmpty()) {
+            return super.getExtensionsFor(resource, extensions);
+        }
+
+        final ClassHierarchy hierarchy = hierarchyOf(extensions);
+
+        if (hierarchy == null) {
+            return Collections.emptyList();
+        }
+
+        if (hierarchy.compiled().isEmpty()) {
+            return super.getExtensionsFor(resource, hierarchy.uncompiled());
+        }
+
+        if (hierarchy.uncompiled().isEmpty()) {
+            return hierarchy.bind(ontologyService().assertedClasses(resource.uri(), resource));
+        }
+
+        // The resource is read twice; once for its asserted types, and once for reasoning
+        final WebResource buffered = new BufferedResource(resource);
+
+        final List<Extension> bound = new ArrayList<>(hierarchy.bind(ontologyService().assertedClasses(resource
+                .uri(), buffered)));
+
+        LOG.debug("Reasoning over {} extensions that could not be compiled", hierarchy.uncompiled().size());
+        bound.addAll(super.getExtensionsFor(buffered, hierarchy.uncompiled()));
+
+        return bound;
+    }
+
+    // Stored only if no update was received while compiling, so a hierarchy compiled from discarded ontologies is
+    // neither used nor retained
+    private ClassHierarchy hierarchyOf(final Collection<Extension> extensions) {
+        final long current = generation();
+        final List<Object> key = Arrays.asList(current, uris(extensions));
+
+        final ClassHierarchy cached = hierarchies.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        return compiling.get(key, () -> {
+            final ClassHierarchy hierarchy = compile(extensions);
+            if (hierarchy != null) {
+                storeIfCurrent(current, () -> hierarchies.put(key, hierarchy));
+            }
+            return hierarchy;
+        });
+    }
+
+    private ClassHierarchy compile(final Collection<Extension> extensions) {
+        final Ontology union = unionOf(extensions);
+
+        if (union == null) {
+            return null;
+        }
+
+        final ClassHierarchy hierarchy = ClassHierarchy.compile(p -> ontologyService().statementsOf(union, p),
+                extensions);
+        LOG.info("Compiled class hierarchy for {} of {} extensions", hierarchy.compiled().size(), extensions.size());
+        return hierarchy;
+    }
+
+    // Cleared after the generation changes, so that no hierarchy stored before then is kept
+    @Override
+    void discard() {
+        super.discard();
+        hierarchies.clear();
+    }
+
+    // A resource whose representation has been read into memory, so that it may be read more than once
+    private static class BufferedResource implements WebResource {
+
+        final WebResource resource;
+
+        final byte[] representation;
+
+        BufferedResource(final WebResource resource) {
+            this.resource = resource;
+
+            try (WebResource toRead = resource;
+                    InputStream in = toRead.representation()) {
+                this.representation = IOUtils.toByteArray(in);
+            } catch (final Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public String contentType() {
+            return resource.contentType();
+        }
+
+        @Override
+        public URI uri() {
+            return resource.uri();
+        }
+
+        @Override
+        public String name() {
+            return resource.name();
+        }
+
+        @Override
+        public InputStream representation() {
+            return new ByteArrayInputStream(representation);
+        }
+
+        @Override
+        public void close() throws Exception {
+            // nothing
+        }
+    }
+}
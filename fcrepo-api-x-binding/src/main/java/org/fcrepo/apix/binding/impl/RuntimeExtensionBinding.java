@@ -20,35 +20,45 @@ package org.fcrepo.apix.binding.impl;
 
 import static org.fcrepo.apix.model.Ontologies.LDP_LDPR;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.fcrepo.apix.model.Extension;
+import org.fcrepo.apix.model.Ontology;
 import org.fcrepo.apix.model.WebResource;
 import org.fcrepo.apix.model.components.ExtensionBinding;
 import org.fcrepo.apix.model.components.ExtensionRegistry;
+import org.fcrepo.apix.model.components.OntologyRegistry;
 import org.fcrepo.apix.model.components.OntologyService;
 import org.fcrepo.apix.model.components.Registry;
 import org.fcrepo.apix.model.components.ResourceNotFoundException;
+import org.fcrepo.apix.model.components.SingleFlight;
+import org.fcrepo.apix.model.components.Updateable;
 import org.fcrepo.client.FcrepoLink;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,24 +68,64 @@ import org.slf4j.LoggerFactory;
  * Polls the extension registry for all known extensions at time of transaction, and performs reasoning at runtime in
  * order to bind a repository resource to the extensions that match it.
  * </p>
+ * <p>
+ * The ontology closures of all candidate extensions are merged into a single union ontology, which is retained
+ * between requests and discarded only when an extension or ontology changes (see {@link #update(URI)}). Binding a
+ * resource therefore parses the resource once, and performs a single inference pass over the union.
+ * </p>
+ * <p>
+ * Merged ontologies are built from the state of the extension registry and ontology service. So that they are never
+ * merged again from state that has yet to be updated, those are updated first (see {@link #setSources(List)}), and
+ * anything merged or bound before an update is not retained after it.
+ * </p>
  *
  * @author apb@jhu.edu
  */
 @Component(configurationPolicy = ConfigurationPolicy.REQUIRE)
-public class RuntimeExtensionBinding implements ExtensionBinding {
+public class RuntimeExtensionBinding implements ExtensionBinding, Updateable {
 
     private static final Logger LOG = LoggerFactory.getLogger(RuntimeExtensionBinding.class);
 
     private static final URI LDPR = URI.create(LDP_LDPR);
 
+    private static final String FCR_METADATA = "/fcr:metadata";
+
+    static final int DEFAULT_BINDING_CACHE_SIZE = 4096;
+
     private CloseableHttpClient httpClient;
 
     private ExtensionRegistry extensionRegistry;
 
     private OntologyService ontologySvc;
 
+    private OntologyRegistry ontologyRegistry;
+
     private Registry registry;
 
+    private volatile Registry minimalRegistry;
+
+    private boolean omitContainment = false;
+
+    private volatile int bindingCacheSize = DEFAULT_BINDING_CACHE_SIZE;
+
+    private List<String> headerTypeNamespaces = Collections.emptyList();
+
+    private volatile Map<URI, CachedBinding> bindingCache = lru(DEFAULT_BINDING_CACHE_SIZE);
+
+    private List<Updateable> sources = Collections.emptyList();
+
+    // Union of the ontology closures of a given set of extensions, keyed by extension URIs
+    private final Map<Set<URI>, Ontology> unions = new ConcurrentHashMap<>();
+
+    // Unions in progress, keyed by generation and extension URIs
+    private final SingleFlight<List<Object>, Ontology> merges = new SingleFlight<>();
+
+    // Bindings in progress, keyed by generation, resource URI and candidate extension URIs
+    private final SingleFlight<List<Object>, Collection<Extension>> bindings = new SingleFlight<>();
+
+    // Incremented whenever unions and bindings are discarded; guarded by unions
+    private volatile long generation = 0;
+
     /**
      * Set the http client
      *
@@ -85,6 +135,42 @@ public class RuntimeExtensionBinding implements ExtensionBinding {
         this.httpClient = client;
     }
 
+    /**
+     * Set the maximum number of resources whose bindings are cached.
+     * <p>
+     * A value of zero or less disables caching.
+     * </p>
+     *
+     * @param size maximum number of resource URIs to cache bindings for.
+     */
+    public void setBindingCacheSize(final int size) {
+        this.bindingCacheSize = size;
+        this.bindingCache = lru(Math.max(size, 0));
+    }
+
+    /**
+     * Set the namespaces of types that are always present in {@code Link rel="type"} headers.
+     * <p>
+     * If non-empty, binding is first attempted using only the types in the {@code Link} headers of a resource.
+     * Extensions whose binding class is in one of these namespaces are bound if and only if their binding class is
+     * present in the headers. The resource's content is retrieved and reasoned over only if there are candidate
+     * extensions whose binding class is in some other namespace, and which are not bound via the headers. This
+     * presumes that the server reports all of a resource's types in these namespaces in its {@code Link} headers, as
+     * Fedora does for LDP interaction models.
+     * </p>
+     *
+     * @param namespaces Whitespace or comma separated list of namespace URIs, or empty to disable.
+     */
+    public void setHeaderTypeNamespaces(final String namespaces) {
+        if (namespaces == null) {
+            this.headerTypeNamespaces = Collections.emptyList();
+        } else {
+            this.headerTypeNamespaces = Arrays.stream(namespaces.split("[\\s,]+"))
+                    .filter(ns -> !ns.isEmpty())
+                    .collect(Collectors.toList());
+        }
+    }
+
     /**
      * Set the underlying registry containing extensions that may be bound.
      *
@@ -105,6 +191,32 @@ public class RuntimeExtensionBinding implements ExtensionBinding {
         ontologySvc = os;
     }
 
+    /**
+     * Set the ontology registry.
+     * <p>
+     * Changes to resources in this registry invalidate any merged ontologies retained by this binding.
+     * </p>
+     *
+     * @param registry Ontology registry instance.
+     */
+    @Reference
+    public void setOntologyRegistry(final OntologyRegistry registry) {
+        this.ontologyRegistry = registry;
+    }
+
+    /**
+     * Set the components that merged ontologies are built from, i.e. the extension registry and ontology service.
+     * <p>
+     * When an extension or ontology changes, these are updated before merged ontologies are discarded, regardless of
+     * the order in which updates are otherwise received.
+     * </p>
+     *
+     * @param sources Updateable extension registry and ontology service.
+     */
+    public void setSources(final List<Updateable> sources) {
+        this.sources = sources;
+    }
+
     /**
      * Set the underlying delegate registry for retrieving arbitrary web resources from the repository.
      * <p>
@@ -119,11 +231,48 @@ public class RuntimeExtensionBinding implements ExtensionBinding {
     }
 
     /**
-     * Simple/naive binding algorithm, there may be opportunities for optimization when the time is right
+     * Set the registry for retrieving repository resources without containment or membership triples.
+     * <p>
+     * Used instead of the delegate registry when {@link #setOmitContainment(boolean)} is enabled.
+     * </p>
+     *
+     * @param registry Registry impl.
+     */
+    @Reference(target = "(org.fcrepo.apix.registry.role=minimal)", cardinality = ReferenceCardinality.OPTIONAL)
+    public void setMinimalRegistry(final Registry registry) {
+        this.minimalRegistry = registry;
+    }
+
+    /**
+     * Stop using a minimal registry that is going away, and use the delegate registry instead.
+     *
+     * @param registry Registry impl.
+     */
+    public void unsetMinimalRegistry(final Registry registry) {
+        if (this.minimalRegistry == registry) {
+            this.minimalRegistry = null;
+        }
+    }
+
+    /**
+     * Retrieve resource content for binding without LDP containment or membership triples.
+     * <p>
+     * Neither are relevant to binding, and for large containers they dominate the size of the representation.
+     * Requires a minimal registry to have been set; otherwise the delegate registry is used.
+     * </p>
+     *
+     * @param omit true if containment and membership triples should be omitted.
+     */
+    public void setOmitContainment(final boolean omit) {
+        this.omitContainment = omit;
+    }
+
+    /**
+     * Binding algorithm
      * <ol>
      * <li>Determine the set of known extensions</li>
-     * <li>for each extension, get its ontology closure</li>
-     * <li>for each ontology closure, infer classes of the instance</li>
+     * <li>Find (or compute and retain) the union of the ontology closures of those extensions</li>
+     * <li>Infer classes of the instance over that union</li>
      * <li>For each extension, see if its binding class is in that list of inferred classes.</li>
      * <li>Return all extensions that match</li>
      * </ol>
@@ -138,27 +287,52 @@ public class RuntimeExtensionBinding implements ExtensionBinding {
     public Collection<Extension> getExtensionsFor(final WebResource resource,
             final Collection<Extension> extensions) {
 
-        try (final InputStream resourceContent = resource.representation()) {
+        final Ontology union = unionOf(extensions);
 
-            final byte[] content = IOUtils.toByteArray(resourceContent);
+        if (union == null) {
+            return Collections.emptyList();
+        }
+
+        final Set<URI> rdfTypes = ontologySvc.inferClasses(resource.uri(), resource, union).stream()
+                .peek(rdfType -> LOG.debug("Instance {} is of class {}", resource.uri(), rdfType))
+                .collect(Collectors.toSet());
+
+        return extensions.stream()
+                .peek(e -> LOG.debug("Extension {} binds to instances of {}", e.uri(), e.bindingClass()))
+                .filter(e -> rdfTypes.contains(e.bindingClass()))
+                .peek(e -> LOG.debug("Extension {} bound to instance {} via {}", e.uri(), resource.uri(), e
+                        .bindingClass()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the union of the ontology closures of the given extensions.
+     *
+     * @param extensions Extensions
+     * @return Merged ontology, or null if none of the extensions have resources.
+     */
+    Ontology unionOf(final Collection<Extension> extensions) {
+        final Set<URI> key = uris(extensions);
+
+        final Ontology union = unions.get(key);
+        if (union != null) {
+            return union;
+        }
 
-            final Set<URI> rdfTypes = extensions.stream()
+        final long current = generation;
+        return merges.get(Arrays.asList(current, key), () -> {
+            final Ontology merged = extensions.stream()
                     .flatMap(RuntimeExtensionBinding::getExtensionResource)
-                    .peek(r -> LOG.debug("Examinining the ontology closure of extension {}", r.uri()))
+                    .peek(r -> LOG.debug("Merging the ontology closure of extension {}", r.uri()))
                     .map(ontologySvc::parseOntology)
-                    .flatMap(o -> ontologySvc.inferClasses(resource.uri(), cached(resource, content), o).stream())
-                    .peek(rdfType -> LOG.debug("Instance {} is of class {}", resource.uri(), rdfType))
-                    .collect(Collectors.toSet());
-
-            return extensions.stream()
-                    .peek(e -> LOG.debug("Extension {} binds to instances of {}", e.uri(), e.bindingClass()))
-                    .filter(e -> rdfTypes.contains(e.bindingClass()))
-                    .peek(e -> LOG.debug("Extension {} bound to instance {} via {}", e.uri(), resource.uri(), e
-                            .bindingClass()))
-                    .collect(Collectors.toList());
-        } catch (final IOException e) {
-            throw new RuntimeException(e);
-        }
+                    .reduce(ontologySvc::merge)
+                    .orElse(null);
+
+            if (merged != null) {
+                storeIfCurrent(current, () -> unions.put(key, merged));
+            }
+            return merged;
+        });
     }
 
     private static Stream<WebResource> getExtensionResource(final Extension e) {
@@ -170,12 +344,15 @@ public class RuntimeExtensionBinding implements ExtensionBinding {
         }
     }
 
-    private WebResource cached(final WebResource initial, final byte[] content) {
-        return WebResource.of(new ByteArrayInputStream(content), initial.contentType(), initial.uri(), initial
-                .name());
-    }
-
-    /** Just does a dumb dereference and lookup */
+    /**
+     * Dereference and bind.
+     * <p>
+     * Results are cached by resource URI, and are re-used as long as a conditional HEAD request indicates that the
+     * resource has not been modified (per its ETag or Last-Modified date), and no update has been received for the
+     * resource (see {@link #update(URI)}). Concurrent requests to bind the same resource to the same extensions share
+     * a single lookup and result.
+     * </p>
+     */
     @Override
     public Collection<Extension> getExtensionsFor(final URI resourceURI, final Collection<Extension> from) {
 
@@ -183,10 +360,33 @@ public class RuntimeExtensionBinding implements ExtensionBinding {
             return Collections.emptyList();
         }
 
+        final Set<URI> candidates = uris(from);
+        final long current = generation;
+        return bindings.get(Arrays.asList(current, resourceURI, candidates), () -> lookup(resourceURI, from,
+                candidates, current));
+    }
+
+    private Collection<Extension> lookup(final URI resourceURI, final Collection<Extension> from,
+            final Set<URI> candidates, final long asOf) {
+
+        final CachedBinding cached = bindingCache.get(resourceURI);
+        final Collection<Extension> previous = cached != null ? cached.bound.get(candidates) : null;
+
+        final HttpHead head = new HttpHead(resourceURI);
+        if (previous != null) {
+            cached.addConditions(head);
+        }
+
         // Use object contents for reasoning, or if binary the binary's description
-        try (final CloseableHttpResponse response = httpClient.execute(new HttpHead(resourceURI))) {
+        try (final CloseableHttpResponse response = httpClient.execute(head)) {
 
             final int status = response.getStatusLine().getStatusCode();
+
+            if (status == HttpStatus.SC_NOT_MODIFIED && previous != null) {
+                LOG.debug("<{}> has not been modified, using cached binding", resourceURI);
+                return previous;
+            }
+
             if (status > 399 && status < 500) {
                 LOG.info("Got status {} on {}, skipping extensions", status, resourceURI);
                 return Collections.emptyList();
@@ -198,51 +398,239 @@ public class RuntimeExtensionBinding implements ExtensionBinding {
                         resourceURI));
             }
 
-            final List<FcrepoLink> describedByLinks =
-                    Arrays.asList(response.getHeaders("Link")).stream().map(Header::getValue)
-                            .map(FcrepoLink::new)
-                            .filter(l -> "describedby".equals(l.getRel()))
-                            .collect(Collectors.toList());
-
-            final List<URI> types =
-                    Arrays.asList(response.getHeaders("Link")).stream().map(Header::getValue)
-                            .map(FcrepoLink::new)
-                            .filter(l -> "type".equals(l.getRel()))
-                            .map(FcrepoLink::getUri)
-                            .collect(Collectors.toList());
-
-            if (!describedByLinks.isEmpty()) {
-                if (describedByLinks.size() > 1) {
-                    throw new RuntimeException(
-                            String.format("Ambiguous; more than one describes header for <%s>", resourceURI));
-                }
+            final Collection<Extension> bound = bind(resourceURI, response, from);
+            cache(resourceURI, response, candidates, bound, asOf);
+            return bound;
+
+        } catch (final Exception e) {
+            throw new RuntimeException("Could not get triples for reasoning over " + resourceURI, e);
+        }
+    }
 
-                LOG.debug("Using <{}> for inference about binary <{}>", describedByLinks.get(0).getUri(),
-                        resourceURI);
+    private Collection<Extension> bind(final URI resourceURI, final HttpResponse response,
+            final Collection<Extension> from) throws Exception {
 
-                try (WebResource resource = registry.get(describedByLinks.get(0).getUri())) {
-                    return getExtensionsFor(WebResource.of(
-                            resource.representation(),
-                            resource.contentType(),
-                            resourceURI, null), from);
-                }
+        final List<FcrepoLink> describedByLinks =
+                Arrays.asList(response.getHeaders("Link")).stream().map(Header::getValue)
+                        .map(FcrepoLink::new)
+                        .filter(l -> "describedby".equals(l.getRel()))
+                        .collect(Collectors.toList());
 
-            } else if (types.contains(LDPR)) {
-                try (WebResource resource = registry.get(resourceURI)) {
-                    return getExtensionsFor(resource, from);
-                }
-            }
+        final List<URI> types =
+                Arrays.asList(response.getHeaders("Link")).stream().map(Header::getValue)
+                        .map(FcrepoLink::new)
+                        .filter(l -> "type".equals(l.getRel()))
+                        .map(FcrepoLink::getUri)
+                        .collect(Collectors.toList());
 
+        if (describedByLinks.isEmpty() && !types.contains(LDPR)) {
             return Collections.emptyList();
+        }
 
-        } catch (final Exception e) {
-            throw new RuntimeException("Could not get triples for reasoning over " + resourceURI, e);
+        if (headerTypeNamespaces.isEmpty()) {
+            return bindContent(resourceURI, describedByLinks, from);
+        }
+
+        // Bind what we can from the types in Link headers, and only look at content if we need to.
+        final List<Extension> bound = new ArrayList<>();
+        final List<Extension> undecided = new ArrayList<>();
+
+        for (final Extension extension : from) {
+            final URI bindingClass = extension.bindingClass();
+
+            if (bindingClass != null && types.contains(bindingClass)) {
+                LOG.debug("Extension {} bound to instance {} via Link header type {}", extension.uri(), resourceURI,
+                        bindingClass);
+                bound.add(extension);
+            } else if (bindingClass != null && !isHeaderType(bindingClass)) {
+                undecided.add(extension);
+            }
+        }
+
+        if (!undecided.isEmpty()) {
+            LOG.debug("Binding of {} extensions to <{}> cannot be decided from Link headers", undecided.size(),
+                    resourceURI);
+            bound.addAll(bindContent(resourceURI, describedByLinks, undecided));
+        }
+
+        return bound;
+    }
+
+    private Collection<Extension> bindContent(final URI resourceURI, final List<FcrepoLink> describedByLinks,
+            final Collection<Extension> from) throws Exception {
+
+        if (!describedByLinks.isEmpty()) {
+            if (describedByLinks.size() > 1) {
+                throw new RuntimeException(
+                        String.format("Ambiguous; more than one describes header for <%s>", resourceURI));
+            }
+
+            LOG.debug("Using <{}> for inference about binary <{}>", describedByLinks.get(0).getUri(),
+                    resourceURI);
+
+            try (WebResource resource = contentRegistry().get(describedByLinks.get(0).getUri())) {
+                return getExtensionsFor(WebResource.of(
+                        resource.representation(),
+                        resource.contentType(),
+                        resourceURI, null), from);
+            }
+        }
+
+        try (WebResource resource = contentRegistry().get(resourceURI)) {
+            return getExtensionsFor(resource, from);
+        }
+    }
+
+    private Registry contentRegistry() {
+        final Registry minimal = minimalRegistry;
+        if (omitContainment && minimal != null) {
+            return minimal;
+        }
+        return registry;
+    }
+
+    // True if the given class is in a namespace for which all types are expected to be in Link headers
+    private boolean isHeaderType(final URI rdfType) {
+        return headerTypeNamespaces.stream().anyMatch(ns -> rdfType.toString().startsWith(ns));
+    }
+
+    private void cache(final URI resourceURI, final HttpResponse response, final Set<URI> candidates,
+            final Collection<Extension> bound, final long asOf) {
+
+        if (bindingCacheSize <= 0) {
+            return;
+        }
+
+        final CachedBinding fresh = new CachedBinding(response);
+
+        if (fresh.etag == null && fresh.lastModified == null) {
+            LOG.debug("<{}> has no ETag or Last-Modified, not caching its binding", resourceURI);
+            return;
+        }
+
+        synchronized (unions) {
+            if (asOf != generation) {
+                return;
+            }
+            bindingCache.compute(resourceURI, (uri, existing) -> existing != null && existing.isSameVersionAs(fresh)
+                    ? existing : fresh).bound.put(candidates, bound);
         }
     }
 
+    static Set<URI> uris(final Collection<Extension> extensions) {
+        return extensions.stream().map(Extension::uri).collect(Collectors.toSet());
+    }
+
     /** Just does a dumb dereference and lookup */
     @Override
     public Collection<Extension> getExtensionsFor(final URI resourceURI) {
         return getExtensionsFor(resourceURI, extensionRegistry.getExtensions());
     }
+
+    @Override
+    public void update() {
+        sources.forEach(source -> {
+            try {
+                source.update();
+            } catch (final Exception e) {
+                LOG.warn("Update of {} failed", source, e);
+            }
+        });
+        discard();
+    }
+
+    @Override
+    public void update(final URI inResponseTo) {
+        if (extensionRegistry.hasInDomain(inResponseTo) ||
+                (ontologyRegistry != null && ontologyRegistry.hasInDomain(inResponseTo))) {
+            sources.forEach(source -> {
+                try {
+                    source.update(inResponseTo);
+                } catch (final Exception e) {
+                    LOG.warn("Update of {} in response to <{}> failed", source, inResponseTo, e);
+                }
+            });
+            discard();
+        } else {
+            bindingCache.remove(inResponseTo);
+
+            // Changes to a binary's description affect bindings of the binary
+            final String uri = inResponseTo.toString();
+            if (uri.endsWith(FCR_METADATA)) {
+                bindingCache.remove(URI.create(uri.substring(0, uri.length() - FCR_METADATA.length())));
+            }
+        }
+    }
+
+    // Ontology service used for parsing, merging, and reasoning
+    OntologyService ontologyService() {
+        return ontologySvc;
+    }
+
+    // Number of times merged ontologies and bindings have been discarded
+    long generation() {
+        return generation;
+    }
+
+    // Store something derived from merged ontologies, unless they have been discarded since the given generation
+    void storeIfCurrent(final long asOf, final Runnable store) {
+        synchronized (unions) {
+            if (asOf == generation) {
+                store.run();
+            }
+        }
+    }
+
+    // Discard merged ontologies and bindings, including any in progress
+    void discard() {
+        LOG.debug("Discarding merged extension ontologies and cached bindings");
+        synchronized (unions) {
+            generation++;
+            unions.clear();
+            bindingCache.clear();
+        }
+    }
+
+    // Validators and bindings for a single version of a resource, keyed by the set of candidate extensions
+    private static class CachedBinding {
+
+        final String etag;
+
+        final String lastModified;
+
+        final Map<Set<URI>, Collection<Extension>> bound = new ConcurrentHashMap<>();
+
+        CachedBinding(final HttpResponse response) {
+            etag = value(response.getFirstHeader(HttpHeaders.ETAG));
+            lastModified = value(response.getFirstHeader(HttpHeaders.LAST_MODIFIED));
+        }
+
+        void addConditions(final HttpRequest request) {
+            if (etag != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+            } else if (lastModified != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+        }
+
+        boolean isSameVersionAs(final CachedBinding other) {
+            return Objects.equals(etag, other.etag) && Objects.equals(lastModified, other.lastModified);
+        }
+
+        private static String value(final Header header) {
+            return header != null ? header.getValue() : null;
+        }
+    }
+
+    private static <K, V> Map<K, V> lru(final int maxEntries) {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
 }
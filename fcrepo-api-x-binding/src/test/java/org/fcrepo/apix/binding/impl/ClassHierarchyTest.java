@@ -0,0 +1,133 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.binding.impl;
+
+import static org.fcrepo.apix.binding.impl.ClassHierarchy.OWL_EQUIVALENT_CLASS;
+import static org.fcrepo.apix.binding.impl.ClassHierarchy.RDFS_DOMAIN;
+import static org.fcrepo.apix.binding.impl.ClassHierarchy.RDFS_SUBCLASS_OF;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.fcrepo.apix.model.Extension;
+
+import org.junit.Test;
+
+/**
+ * Tests compilation of class hierarchies.
+ *
+ * @author apb@jhu.edu
+ */
+public class ClassHierarchyTest {
+
+    static final String CLASS_A = "http://example.org/classes#A";
+
+    static final String CLASS_B = "http://example.org/classes#B";
+
+    static final String CLASS_C = "http://example.org/classes#C";
+
+    static final String CLASS_D = "http://example.org/classes#D";
+
+    static final String CLASS_E = "http://example.org/classes#E";
+
+    static final String PROPERTY = "http://example.org/props#p";
+
+    // B < A, C = B, D has unrelated domain E
+    static final Function<URI, Collection<Map.Entry<URI, URI>>> ONTOLOGY = ontology(
+            triple(CLASS_B, RDFS_SUBCLASS_OF, CLASS_A),
+            triple(CLASS_C, OWL_EQUIVALENT_CLASS, CLASS_B),
+            triple(CLASS_E, RDFS_SUBCLASS_OF, CLASS_D),
+            triple(PROPERTY, RDFS_DOMAIN, CLASS_E));
+
+    // Verify that bindings follow subclass and equivalent class relationships
+    @Test
+    public void subClassBindingTest() {
+        final Extension bindsToA = extension(CLASS_A);
+        final Extension bindsToC = extension(CLASS_C);
+
+        final ClassHierarchy hierarchy = ClassHierarchy.compile(ONTOLOGY, Arrays.asList(bindsToA, bindsToC));
+
+        assertEquals(2, hierarchy.compiled().size());
+        assertTrue(hierarchy.uncompiled().isEmpty());
+
+        final List<Extension> bound = hierarchy.bind(Arrays.asList(URI.create(CLASS_B)));
+        assertTrue(bound.contains(bindsToA));
+        assertTrue(bound.contains(bindsToC));
+
+        assertEquals(Arrays.asList(bindsToA), hierarchy.bind(Arrays.asList(URI.create(CLASS_A))));
+    }
+
+    // Verify that extensions bound to classes that can be inferred from property domains are not compiled
+    @Test
+    public void propertyTypingNotCompiledTest() {
+        final Extension bindsToD = extension(CLASS_D);
+        final Extension bindsToA = extension(CLASS_A);
+
+        final ClassHierarchy hierarchy = ClassHierarchy.compile(ONTOLOGY, Arrays.asList(bindsToD, bindsToA));
+
+        assertEquals(Arrays.asList(bindsToA), hierarchy.compiled());
+        assertEquals(Arrays.asList(bindsToD), hierarchy.uncompiled());
+
+        assertTrue(hierarchy.bind(Arrays.asList(URI.create(CLASS_E))).isEmpty());
+    }
+
+    // Verify that types unknown to the ontology bind only to extensions with that exact binding class.
+    @Test
+    public void unknownTypeTest() {
+        final String unknown = "http://example.org/classes#Unknown";
+        final Extension bindsToUnknown = extension(unknown);
+
+        final ClassHierarchy hierarchy = ClassHierarchy.compile(ONTOLOGY, Arrays.asList(bindsToUnknown));
+
+        assertEquals(Arrays.asList(bindsToUnknown), hierarchy.bind(Arrays.asList(URI.create(unknown))));
+        assertTrue(hierarchy.bind(Arrays.asList(URI.create("http://example.org/other"))).isEmpty());
+    }
+
+    private static Extension extension(final String bindingClass) {
+        final Extension extension = mock(Extension.class);
+        when(extension.bindingClass()).thenReturn(URI.create(bindingClass));
+        return extension;
+    }
+
+    private static String[] triple(final String s, final URI p, final String o) {
+        return new String[] { s, p.toString(), o };
+    }
+
+    // Statements of an ontology by property, as would be provided by an ontology service
+    private static Function<URI, Collection<Map.Entry<URI, URI>>> ontology(final String[]... triples) {
+        final Map<URI, Collection<Map.Entry<URI, URI>>> statements = new HashMap<>();
+        for (final String[] triple : triples) {
+            statements.computeIfAbsent(URI.create(triple[1]), k -> new ArrayList<>()).add(
+                    new SimpleImmutableEntry<>(URI.create(triple[0]), URI.create(triple[2])));
+        }
+        return p -> statements.getOrDefault(p, Collections.emptyList());
+    }
+}
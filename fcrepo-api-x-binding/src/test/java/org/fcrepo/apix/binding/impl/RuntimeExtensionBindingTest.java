@@ -18,22 +18,46 @@
 
 package org.fcrepo.apix.binding.impl;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.net.URI;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.fcrepo.apix.model.Extension;
 import org.fcrepo.apix.model.Ontology;
 import org.fcrepo.apix.model.WebResource;
 import org.fcrepo.apix.model.components.ExtensionRegistry;
 import org.fcrepo.apix.model.components.OntologyService;
+import org.fcrepo.apix.model.components.Registry;
+import org.fcrepo.apix.model.components.Updateable;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHeader;
 
 import org.junit.Ignore;
 import org.junit.Test;
@@ -115,6 +139,16 @@ public class RuntimeExtensionBindingTest {
             public Ontology getOntology(final URI uri) {
                 return null;
             }
+
+            @Override
+            public Set<URI> assertedClasses(final URI individual, final WebResource resource) {
+                return Collections.emptySet();
+            }
+
+            @Override
+            public List<Map.Entry<URI, URI>> statementsOf(final Ontology ontology, final URI property) {
+                return Collections.emptyList();
+            }
         };
 
         toTest.setExtensionRegistry(extensionRegistry);
@@ -134,6 +168,213 @@ public class RuntimeExtensionBindingTest {
         assertTrue(expectedExtensions.containsAll(boundExtensions));
     }
 
+    // Verifies that the merged ontology is computed once, and re-computed only after an update, which is first
+    // passed on to the extension registry and ontology service
+    @SuppressWarnings("resource")
+    @Test
+    public void unionReuseTest() {
+
+        final URI extensionURI = URI.create("test:/extension");
+        final URI individual = URI.create("test:/individual");
+        final URI boundClass = URI.create("test:/class1");
+
+        final Extension extension = mock(Extension.class);
+        when(extension.uri()).thenReturn(extensionURI);
+        when(extension.getResource()).thenReturn(mock(WebResource.class));
+        when(extension.bindingClass()).thenReturn(boundClass);
+
+        final ExtensionRegistry extensionRegistry = mock(ExtensionRegistry.class);
+        when(extensionRegistry.getExtensions()).thenReturn(Arrays.asList(extension));
+        when(extensionRegistry.hasInDomain(extensionURI)).thenReturn(true);
+
+        final AtomicInteger parsed = new AtomicInteger();
+
+        final OntologyService ontologyService = mock(OntologyService.class);
+        when(ontologyService.parseOntology(any(WebResource.class))).thenAnswer(i -> {
+            parsed.incrementAndGet();
+            return new Ont("");
+        });
+        when(ontologyService.inferClasses(any(URI.class), any(WebResource.class), any(Ontology.class)))
+                .thenReturn(new HashSet<>(Arrays.asList(boundClass)));
+
+        final Updateable source = mock(Updateable.class);
+
+        final RuntimeExtensionBinding toTest = new RuntimeExtensionBinding();
+        toTest.setExtensionRegistry(extensionRegistry);
+        toTest.setOntologyService(ontologyService);
+        toTest.setSources(Arrays.asList(source));
+
+        final WebResource individualResource = mock(WebResource.class);
+        when(individualResource.uri()).thenReturn(individual);
+
+        assertTrue(toTest.getExtensionsFor(individualResource).contains(extension));
+        assertTrue(toTest.getExtensionsFor(individualResource).contains(extension));
+        assertEquals(1, parsed.get());
+        verify(ontologyService, times(2)).inferClasses(any(URI.class), any(WebResource.class), any(
+                Ontology.class));
+
+        toTest.update(extensionURI);
+        verify(source).update(extensionURI);
+
+        assertTrue(toTest.getExtensionsFor(individualResource).contains(extension));
+        assertEquals(2, parsed.get());
+    }
+
+    // Verifies that an ontology merged while an update is received is not retained
+    @SuppressWarnings("resource")
+    @Test
+    public void updateDuringMergeTest() throws Exception {
+
+        final URI extensionURI = URI.create("test:/extension");
+        final URI individual = URI.create("test:/individual");
+        final URI boundClass = URI.create("test:/class1");
+
+        final Extension extension = mock(Extension.class);
+        when(extension.uri()).thenReturn(extensionURI);
+        when(extension.getResource()).thenReturn(mock(WebResource.class));
+        when(extension.bindingClass()).thenReturn(boundClass);
+
+        final ExtensionRegistry extensionRegistry = mock(ExtensionRegistry.class);
+        when(extensionRegistry.getExtensions()).thenReturn(Arrays.asList(extension));
+        when(extensionRegistry.hasInDomain(extensionURI)).thenReturn(true);
+
+        final AtomicInteger parsed = new AtomicInteger();
+        final CountDownLatch merging = new CountDownLatch(1);
+        final CountDownLatch updated = new CountDownLatch(1);
+
+        final OntologyService ontologyService = mock(OntologyService.class);
+        when(ontologyService.parseOntology(any(WebResource.class))).thenAnswer(i -> {
+            if (parsed.incrementAndGet() == 1) {
+                merging.countDown();
+                updated.await(10, TimeUnit.SECONDS);
+            }
+            return new Ont("");
+        });
+        when(ontologyService.inferClasses(any(URI.class), any(WebResource.class), any(Ontology.class)))
+                .thenReturn(new HashSet<>(Arrays.asList(boundClass)));
+
+        final RuntimeExtensionBinding toTest = new RuntimeExtensionBinding();
+        toTest.setExtensionRegistry(extensionRegistry);
+        toTest.setOntologyService(ontologyService);
+
+        final WebResource individualResource = mock(WebResource.class);
+        when(individualResource.uri()).thenReturn(individual);
+
+        final ExecutorService exe = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Collection<Extension>> before = exe.submit(() -> toTest.getExtensionsFor(
+                    individualResource));
+
+            assertTrue(merging.await(10, TimeUnit.SECONDS));
+            toTest.update(extensionURI);
+            updated.countDown();
+            assertTrue(before.get(10, TimeUnit.SECONDS).contains(extension));
+
+            assertTrue(toTest.getExtensionsFor(individualResource).contains(extension));
+            assertTrue(toTest.getExtensionsFor(individualResource).contains(extension));
+            assertEquals(2, parsed.get());
+        } finally {
+            exe.shutdownNow();
+        }
+    }
+
+    // Verifies that a binding is re-used while a resource is unmodified, and evicted when it changes
+    @SuppressWarnings("resource")
+    @Test
+    public void bindingCacheTest() throws Exception {
+
+        final URI extensionURI = URI.create("test:/extension");
+        final URI individual = URI.create("http://example.org/individual");
+        final URI boundClass = URI.create("test:/class1");
+
+        final Extension extension = mock(Extension.class);
+        when(extension.uri()).thenReturn(extensionURI);
+        when(extension.getResource()).thenReturn(mock(WebResource.class));
+        when(extension.bindingClass()).thenReturn(boundClass);
+
+        final ExtensionRegistry extensionRegistry = mock(ExtensionRegistry.class);
+        when(extensionRegistry.getExtensions()).thenReturn(Arrays.asList(extension));
+
+        final OntologyService ontologyService = mock(OntologyService.class);
+        when(ontologyService.parseOntology(any(WebResource.class))).thenReturn(new Ont(""));
+        when(ontologyService.inferClasses(any(URI.class), any(WebResource.class), any(Ontology.class)))
+                .thenReturn(new HashSet<>(Arrays.asList(boundClass)));
+
+        final Registry registry = mock(Registry.class);
+        when(registry.get(individual)).thenReturn(mock(WebResource.class));
+
+        final StatusLine ok = mock(StatusLine.class);
+        when(ok.getStatusCode()).thenReturn(200);
+        final CloseableHttpResponse okResponse = mock(CloseableHttpResponse.class);
+        when(okResponse.getStatusLine()).thenReturn(ok);
+        when(okResponse.getHeaders("Link")).thenReturn(new Header[] {
+            new BasicHeader("Link", "<http://www.w3.org/ns/ldp#Resource>;rel=\"type\"") });
+        when(okResponse.getFirstHeader(HttpHeaders.ETAG)).thenReturn(new BasicHeader(HttpHeaders.ETAG, "\"1\""));
+
+        final StatusLine notModified = mock(StatusLine.class);
+        when(notModified.getStatusCode()).thenReturn(304);
+        final CloseableHttpResponse notModifiedResponse = mock(CloseableHttpResponse.class);
+        when(notModifiedResponse.getStatusLine()).thenReturn(notModified);
+
+        final CloseableHttpClient client = mock(CloseableHttpClient.class);
+        when(client.execute(isA(HttpHead.class))).thenReturn(okResponse, notModifiedResponse, okResponse);
+
+        final RuntimeExtensionBinding toTest = new RuntimeExtensionBinding();
+        toTest.setExtensionRegistry(extensionRegistry);
+        toTest.setOntologyService(ontologyService);
+        toTest.setDelegateRegistry(registry);
+        toTest.setHttpClient(client);
+
+        assertTrue(toTest.getExtensionsFor(individual).contains(extension));
+        assertTrue(toTest.getExtensionsFor(individual).contains(extension));
+        verify(registry, times(1)).get(individual);
+
+        toTest.update(individual);
+
+        assertTrue(toTest.getExtensionsFor(individual).contains(extension));
+        verify(registry, times(2)).get(individual);
+    }
+
+    // Verifies that extensions binding to header-decidable types are bound without retrieving content
+    @SuppressWarnings("resource")
+    @Test
+    public void headerTypeBindingTest() throws Exception {
+
+        final URI individual = URI.create("http://example.org/individual");
+
+        final Extension bindsToContainer = mock(Extension.class);
+        when(bindsToContainer.uri()).thenReturn(URI.create("test:/container-extension"));
+        when(bindsToContainer.bindingClass()).thenReturn(URI.create("http://www.w3.org/ns/ldp#Container"));
+
+        final Extension bindsToBinary = mock(Extension.class);
+        when(bindsToBinary.uri()).thenReturn(URI.create("test:/binary-extension"));
+        when(bindsToBinary.bindingClass()).thenReturn(URI.create("http://www.w3.org/ns/ldp#NonRDFSource"));
+
+        final Registry registry = mock(Registry.class);
+
+        final StatusLine ok = mock(StatusLine.class);
+        when(ok.getStatusCode()).thenReturn(200);
+        final CloseableHttpResponse okResponse = mock(CloseableHttpResponse.class);
+        when(okResponse.getStatusLine()).thenReturn(ok);
+        when(okResponse.getHeaders("Link")).thenReturn(new Header[] {
+            new BasicHeader("Link", "<http://www.w3.org/ns/ldp#Resource>;rel=\"type\""),
+            new BasicHeader("Link", "<http://www.w3.org/ns/ldp#Container>;rel=\"type\"") });
+
+        final CloseableHttpClient client = mock(CloseableHttpClient.class);
+        when(client.execute(isA(HttpHead.class))).thenReturn(okResponse);
+
+        final RuntimeExtensionBinding toTest = new RuntimeExtensionBinding();
+        toTest.setDelegateRegistry(registry);
+        toTest.setHttpClient(client);
+        toTest.setHeaderTypeNamespaces("http://www.w3.org/ns/ldp#");
+
+        final Collection<Extension> bound = toTest.getExtensionsFor(individual, Arrays.asList(bindsToContainer,
+                bindsToBinary));
+
+        assertEquals(Arrays.asList(bindsToContainer), bound);
+        verify(registry, never()).get(any(URI.class));
+    }
+
     private class Ont implements Ontology {
 
         public String content;
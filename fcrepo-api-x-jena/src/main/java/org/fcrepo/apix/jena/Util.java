@@ -25,6 +25,7 @@ import java.net.URI;
 import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -46,6 +47,9 @@ import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -86,6 +90,48 @@ public abstract class Util {
         return model;
     }
 
+    /**
+     * Parse serialized rdf into a jena Model, keeping only matching triples.
+     * <p>
+     * Triples are filtered as they are parsed, so non-matching triples are never held in memory.
+     * </p>
+     *
+     * @param r resource containing serialized rdf
+     * @param base base URI for the purpose of relative URIs
+     * @param filter triples to keep
+     * @return The model
+     */
+    public static Model parse(final WebResource r, final String base, final Predicate<Triple> filter) {
+
+        if (r instanceof JenaResource && ((JenaResource) r).model() != null) {
+            return ((JenaResource) r).model();
+        }
+
+        final Model model =
+                ModelFactory.createDefaultModel();
+
+        final Lang lang = rdfLanguage(r.contentType());
+
+        final StreamRDF sink = new StreamRDFWrapper(StreamRDFLib.graph(model.getGraph())) {
+
+            @Override
+            public void triple(final Triple triple) {
+                if (filter.test(triple)) {
+                    super.triple(triple);
+                }
+            }
+        };
+
+        try (WebResource toParse = r;
+                InputStream representation = toParse.representation()) {
+            RDFDataMgr.parse(sink, representation, base, lang);
+        } catch (final Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        return model;
+    }
+
     /**
      * Determine the jena language from a content type string
      *
@@ -30,30 +30,49 @@ import static org.fcrepo.apix.model.Ontologies.Apix.PROP_EXPOSES_SERVICE_AT;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.fcrepo.apix.model.Extension;
+import org.fcrepo.apix.model.Extension.Scope;
 import org.fcrepo.apix.model.WebResource;
 import org.fcrepo.apix.model.components.ExtensionRegistry;
 import org.fcrepo.apix.model.components.Registry;
+import org.fcrepo.apix.model.components.ResourceNotFoundException;
+import org.fcrepo.apix.model.components.Updateable;
 
 import org.apache.jena.rdf.model.Model;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
 import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Wraps a delegate registry and parses extensions using Jena.
  * <p>
- * Right now, this is mostly a stub; it does nothing more than identify the class an extension is bound to.
+ * All extensions are kept in an immutable snapshot, which is read without locking or I/O. Changes made through this
+ * registry, or signalled via {@link #update(URI)}, produce a new snapshot that differs from the old one only in the
+ * affected extension, and replace it atomically.
  * </p>
  *
  * @author apb@jhu.edu
  */
-@Component(service = ExtensionRegistry.class, configurationPolicy = ConfigurationPolicy.REQUIRE)
-public class JenaExtensionRegistry extends WrappingRegistry implements ExtensionRegistry {
+@Component(service = { ExtensionRegistry.class, Updateable.class },
+        configurationPolicy = ConfigurationPolicy.REQUIRE)
+public class JenaExtensionRegistry extends WrappingRegistry implements ExtensionRegistry, Updateable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JenaExtensionRegistry.class);
+
+    // Immutable; all extensions by URI, or null if not yet loaded.
+    private volatile Map<URI, Extension> snapshot;
 
     /**
      * Underlying registry containing extension resources.
@@ -68,126 +87,324 @@ public class JenaExtensionRegistry extends WrappingRegistry implements Extension
 
     @Override
     public Extension getExtension(final URI uri) {
+        final Map<URI, Extension> current = snapshot;
+        if (current != null && current.containsKey(uri)) {
+            return current.get(uri);
+        }
         return new JenaExtension(uri);
     }
 
     @Override
     public Collection<Extension> getExtensions() {
-        return delegate.list().stream().map(JenaExtension::new).collect(Collectors.toList());
+        Map<URI, Extension> current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = load(delegate.stream());
+                    snapshot = current;
+                }
+            }
+        }
+        return current.values();
     }
 
-    private class JenaExtension implements Extension {
+    @Override
+    public URI put(final WebResource resource, final boolean asBinary) {
+        return refresh(delegate.put(resource, asBinary));
+    }
 
-        private final URI uri;
+    @Override
+    public URI put(final WebResource resource) {
+        return refresh(delegate.put(resource));
+    }
 
-        private Model model;
+    @Override
+    public URI post(final URI container, final WebResource resource) {
+        return refresh(delegate.post(container, resource));
+    }
 
-        public JenaExtension(final URI uri) {
-            this.uri = uri;
-            this.model = getModel();
-        }
+    @Override
+    public void patch(final URI uri, final String sparqlUpdate) {
+        delegate.patch(uri, sparqlUpdate);
+        refresh(uri);
+    }
 
-        @Override
-        public URI bindingClass() {
-            return objectResourceOf(uri.toString(), PROP_BINDS_TO, model);
+    @Override
+    public void delete(final URI uri) {
+        delegate.delete(uri);
+        refresh(uri);
+    }
+
+    @Override
+    public synchronized void update() {
+        if (snapshot != null) {
+            snapshot = load(delegate.stream());
         }
+    }
 
-        @Override
-        public WebResource getResource() {
-            return delegate.get(uri);
+    @Override
+    public void update(final URI inResponseTo) {
+        if (delegate.hasInDomain(inResponseTo)) {
+            refresh(inResponseTo);
         }
+    }
 
-        @Override
-        public URI uri() {
+    /**
+     * Replace the snapshot with one reflecting the current state of the given resource.
+     * <p>
+     * A known extension is simply re-read, or dropped if it no longer exists. Anything else may be a new extension,
+     * or the container itself; in that case, membership is re-listed, and only extensions that were added or removed
+     * are changed.
+     * </p>
+     */
+    private synchronized URI refresh(final URI uri) {
+        final Map<URI, Extension> current = snapshot;
+        if (current == null) {
             return uri;
         }
 
-        private Model getModel() {
-            if (model == null) {
-                try (WebResource wr = getResource()) {
-                    model = parse(wr);
-                } catch (final Exception e) {
-                    throw new RuntimeException(e);
+        final Map<URI, Extension> next = new LinkedHashMap<>(current);
+
+        if (current.containsKey(uri)) {
+            final Extension extension = loadIfExists(uri);
+            if (extension != null) {
+                next.put(uri, extension);
+            } else {
+                next.remove(uri);
+            }
+        } else {
+            final Set<URI> members = delegate.stream().collect(Collectors.toSet());
+            next.keySet().retainAll(members);
+            for (final URI member : members) {
+                if (!next.containsKey(member)) {
+                    final Extension extension = loadIfExists(member);
+                    if (extension != null) {
+                        next.put(member, extension);
+                    }
                 }
             }
-
-            return model;
         }
 
-        @Override
-        public boolean isExposing() {
-            return model.contains(null, model.getProperty(PROP_EXPOSES_SERVICE));
-        }
+        LOG.debug("Refreshed extensions in response to <{}>; {} extensions", uri, next.size());
 
-        @Override
-        public boolean isIntercepting() {
-            return !isExposing();
+        snapshot = Collections.unmodifiableMap(next);
+        return uri;
+    }
+
+    private Map<URI, Extension> load(final Stream<URI> uris) {
+        final Map<URI, Extension> extensions = new LinkedHashMap<>();
+        uris.forEach(uri -> extensions.put(uri, new JenaExtension(uri)));
+        return Collections.unmodifiableMap(extensions);
+    }
+
+    private Extension loadIfExists(final URI uri) {
+        try {
+            return new JenaExtension(uri);
+        } catch (final ResourceNotFoundException e) {
+            return null;
+        } catch (final RuntimeException e) {
+            if (e.getCause() instanceof ResourceNotFoundException) {
+                return null;
+            }
+            throw e;
         }
+    }
 
-        @Override
-        public ServiceExposureSpec exposed() {
-            return new ServiceExposureSpec() {
+    /**
+     * Extension compiled from its RDF representation.
+     * <p>
+     * Every property is extracted once, when the extension is read, and the parsed model is then discarded. A
+     * property that cannot be determined (e.g. an ambiguous binding class, or a missing {@code exposesServiceAt} for
+     * {@link ServiceExposureSpec#exposedAt()}) throws the same exception as it would have when queried directly,
+     * but only when it is asked for.
+     * </p>
+     */
+    private class JenaExtension implements Extension {
+
+        private final URI uri;
+
+        private final Compiled<URI> bindingClass;
+
+        private final boolean isExposing;
+
+        private final Set<URI> consumed;
+
+        private final Compiled<URI> exposedService;
+
+        private final Compiled<URI> exposedAt;
+
+        private final Compiled<Scope> scope;
+
+        private final ServiceExposureSpec exposed;
+
+        private final Spec intercepted;
+
+        public JenaExtension(final URI uri) {
+            this.uri = uri;
+
+            final Model model;
+            try (WebResource wr = getResource()) {
+                model = parse(wr);
+            } catch (final Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            final String subject = uri.toString();
+
+            this.bindingClass = Compiled.of(() -> objectResourceOf(subject, PROP_BINDS_TO, model));
+            this.isExposing = model.contains(null, model.getProperty(PROP_EXPOSES_SERVICE));
+            this.consumed = Collections.unmodifiableSet(new HashSet<>(objectResourcesOf(subject,
+                    PROP_CONSUMES_SERVICE, model)));
+            this.exposedService = Compiled.of(() -> objectResourceOf(subject, PROP_EXPOSES_SERVICE, model));
+            this.exposedAt = Compiled.of(() -> exposedAt(objectLiteralOf(subject, PROP_EXPOSES_SERVICE_AT, model)));
+            this.scope = exposedAt.map(JenaExtensionRegistry::scope);
+
+            this.exposed = new ServiceExposureSpec() {
 
                 @Override
                 public Set<URI> consumed() {
-                    return new HashSet<>(objectResourcesOf(uri.toString(), PROP_CONSUMES_SERVICE, model));
+                    return consumed;
                 }
 
                 @Override
                 public Scope scope() {
-                    final URI exposeAtURI = exposedAt();
-
-                    if (exposeAtURI.isAbsolute() && exposeAtURI.getScheme().startsWith("http")) {
-                        return Scope.EXTERNAL;
-                    } else if (!exposeAtURI.isAbsolute() && exposeAtURI.getRawPath().startsWith("/")) {
-                        return Scope.REPOSITORY;
-                    } else {
-                        return Scope.RESOURCE;
-                    }
+                    return scope.get();
                 }
 
                 @Override
                 public URI exposedService() {
-                    return objectResourceOf(uri.toString(), PROP_EXPOSES_SERVICE, model);
+                    return exposedService.get();
                 }
 
                 @Override
                 public URI exposedAt() {
-                    final String exposedAt = objectLiteralOf(uri.toString(), PROP_EXPOSES_SERVICE_AT, model);
+                    return exposedAt.get();
+                }
+            };
 
-                    if (exposedAt == null) {
-                        throw new RuntimeException(String.format(
-                                "Extension <%s> does not expose any services!", uri));
-                    }
+            this.intercepted = new Spec() {
 
-                    if (exposedAt.startsWith("/") || exposedAt.startsWith("http")) {
-                        return URI.create(exposedAt);
-                    } else {
-                        try {
-                            // Is there a more elegant way to do this?
-                            // The problem is that it seems impossible to create a relative URI with a path containing
-                            // a colon in it (e.g. "this:that"). Every URI constructor creates a string which is then
-                            // parsed, making "this:that" interpreted as a URI with scheme "this".
-                            final URI base = new URI("none", "none", "/", null, null);
-                            final URI exposed = new URI("none", "none", "/" + exposedAt, null, null);
-                            return base.relativize(exposed);
-                        } catch (final URISyntaxException e) {
-                            throw new RuntimeException(e);
-                        }
-                    }
+                @Override
+                public Set<URI> consumed() {
+                    return consumed;
                 }
             };
         }
 
+        @Override
+        public URI bindingClass() {
+            return bindingClass.get();
+        }
+
+        @Override
+        public WebResource getResource() {
+            return delegate.get(uri);
+        }
+
+        @Override
+        public URI uri() {
+            return uri;
+        }
+
+        @Override
+        public boolean isExposing() {
+            return isExposing;
+        }
+
+        @Override
+        public boolean isIntercepting() {
+            return !isExposing;
+        }
+
+        @Override
+        public ServiceExposureSpec exposed() {
+            return exposed;
+        }
+
         @Override
         public Spec intercepted() {
-            return new Spec() {
+            return intercepted;
+        }
 
-                @Override
-                public Set<URI> consumed() {
-                    return new HashSet<>(objectResourcesOf(uri.toString(), PROP_CONSUMES_SERVICE, model));
+        private URI exposedAt(final String exposedAt) {
+
+            if (exposedAt == null) {
+                throw new RuntimeException(String.format(
+                        "Extension <%s> does not expose any services!", uri));
+            }
+
+            if (exposedAt.startsWith("/") || exposedAt.startsWith("http")) {
+                return URI.create(exposedAt);
+            } else {
+                try {
+                    // Is there a more elegant way to do this?
+                    // The problem is that it seems impossible to create a relative URI with a path containing
+                    // a colon in it (e.g. "this:that"). Every URI constructor creates a string which is then
+                    // parsed, making "this:that" interpreted as a URI with scheme "this".
+                    final URI base = new URI("none", "none", "/", null, null);
+                    final URI exposed = new URI("none", "none", "/" + exposedAt, null, null);
+                    return base.relativize(exposed);
+                } catch (final URISyntaxException e) {
+                    throw new RuntimeException(e);
                 }
-            };
+            }
+        }
+    }
+
+    private static Scope scope(final URI exposeAtURI) {
+        if (exposeAtURI.isAbsolute() && exposeAtURI.getScheme().startsWith("http")) {
+            return Scope.EXTERNAL;
+        } else if (!exposeAtURI.isAbsolute() && exposeAtURI.getRawPath().startsWith("/")) {
+            return Scope.REPOSITORY;
+        } else {
+            return Scope.RESOURCE;
+        }
+    }
+
+    /** Value computed once, or the failure when computing it */
+    private static class Compiled<T> {
+
+        private final T value;
+
+        // Cause of the failure. Never thrown itself, since it would be shared by every thread that accesses it.
+        private final RuntimeException error;
+
+        private Compiled(final T value, final RuntimeException error) {
+            this.value = value;
+            this.error = error;
+        }
+
+        static <T> Compiled<T> of(final Supplier<T> supplier) {
+            try {
+                return new Compiled<>(supplier.get(), null);
+            } catch (final RuntimeException e) {
+                return new Compiled<>(null, e);
+            }
+        }
+
+        <R> Compiled<R> map(final Function<T, R> f) {
+            if (error != null) {
+                return new Compiled<>(null, error);
+            }
+            return of(() -> f.apply(value));
+        }
+
+        T get() {
+            if (error != null) {
+                throw failure();
+            }
+            return value;
+        }
+
+        // A new exception of the same kind for each access, caused by the original failure
+        private RuntimeException failure() {
+            if (error instanceof ResourceNotFoundException) {
+                final RuntimeException e = new ResourceNotFoundException(error.getMessage());
+                e.initCause(error);
+                return e;
+            }
+            return new RuntimeException(error.getMessage(), error);
         }
     }
 }
@@ -18,27 +18,53 @@
 
 package org.fcrepo.apix.jena.impl;
 
+import static org.fcrepo.apix.jena.Util.objectResourcesOf;
 import static org.fcrepo.apix.jena.Util.parse;
 
 import java.net.URI;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.fcrepo.apix.jena.JenaResource;
 import org.fcrepo.apix.model.Ontology;
 import org.fcrepo.apix.model.WebResource;
+import org.fcrepo.apix.model.components.FreshReads;
 import org.fcrepo.apix.model.components.OntologyRegistry;
 import org.fcrepo.apix.model.components.OntologyService;
+import org.fcrepo.apix.model.components.Updateable;
 
-import org.apache.jena.ontology.Individual;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.compose.MultiUnion;
 import org.apache.jena.ontology.OntModel;
 import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.model.InfModel;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.ModelGetter;
 import org.apache.jena.rdf.model.ModelReader;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.reasoner.Reasoner;
+import org.apache.jena.sparql.graph.GraphReadOnly;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
 import org.osgi.service.component.annotations.Reference;
@@ -47,11 +73,15 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Uses Jena to parse and provide reasoning over ontologies.
+ * <p>
+ * Ontologies retrieved by IRI are retained along with their import closures, and are invalidated in response to
+ * {@link #update(URI)} on their location in the underlying ontology registry.
+ * </p>
  *
  * @author apb@jhu.edu
  */
 @Component(configurationPolicy = ConfigurationPolicy.REQUIRE)
-public class JenaOntologyService implements OntologyService {
+public class JenaOntologyService implements OntologyService, Updateable {
 
     private OntologyRegistry registry;
 
@@ -63,8 +93,39 @@ public class JenaOntologyService implements OntologyService {
 
     static final String OWL_IMPORTS = "http://www.w3.org/2002/07/owl#imports";
 
+    static final String OWL_SAME_AS = "http://www.w3.org/2002/07/owl#sameAs";
+
+    static final String FCR_METADATA = "/fcr:metadata";
+
+    static final int DEFAULT_IMPORT_THREADS = 4;
+
     private static final Logger LOG = LoggerFactory.getLogger(JenaOntologyService.class);
 
+    private boolean cacheClosures = true;
+
+    // Guards the closure cache and its indexes
+    private final Object index = new Object();
+
+    // Incremented on every invalidation, so that closures computed concurrently with one are not retained
+    private long generation = 0;
+
+    // Ontology IRI to asserted triples of that ontology, shared by all closures that include it
+    private final Map<String, Asserted> loaded = new ConcurrentHashMap<>();
+
+    // Ontology IRI to the ontology with its import closure
+    private final Map<String, Ont> closures = new ConcurrentHashMap<>();
+
+    // Ontology IRI to the IRIs of the closures that include it
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+
+    // Retrievals of ontologies currently in progress, by IRI
+    private final Map<String, Fetch> inFlight = new ConcurrentHashMap<>();
+
+    private ExecutorService importExecutor = importExecutor(DEFAULT_IMPORT_THREADS);
+
+    // Location an ontology was retrieved from, to the IRIs it was retrieved as
+    private final Map<URI, Set<String>> locations = new HashMap<>();
+
     /**
      * Jena ontology model/reasoning specification.
      *
@@ -90,66 +151,290 @@ public class JenaOntologyService implements OntologyService {
         this.registry = registry;
     }
 
+    /**
+     * Retain the import closures of ontologies, by IRI.
+     * <p>
+     * When enabled, each ontology is retrieved from the registry at most once until it changes. Changes are
+     * signalled via {@link #update(URI)}, and invalidate the closures of the changed ontology and of every ontology
+     * that imports it, directly or transitively.
+     * </p>
+     *
+     * @param cache true if closures are to be cached.
+     */
+    public void setCacheClosures(final boolean cache) {
+        this.cacheClosures = cache;
+        if (!cache) {
+            update();
+        }
+    }
+
+    /**
+     * Set the maximum number of ontologies retrieved concurrently while resolving imports.
+     *
+     * @param threads Number of threads, at least one.
+     */
+    public void setImportThreads(final int threads) {
+        final ExecutorService previous = importExecutor;
+        importExecutor = importExecutor(threads);
+        previous.shutdown();
+    }
+
+    /** Shut down */
+    public void shutdown() {
+        importExecutor.shutdownNow();
+    }
+
+    private static ExecutorService importExecutor(final int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(threads, 1), r -> {
+            final Thread thread = new Thread(r, "apix-ontology-import-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     @Override
     public Ont getOntology(final URI uri) {
-        return new Ont(resolveImports(ModelFactory.createOntologyModel(defaultSpec, load(uri.toString()))));
+        return closure(uri.toString());
     }
 
     @Override
     public Ont parseOntology(final WebResource ont) {
         try (WebResource ontology = ont) {
-            return new Ont(resolveImports(ModelFactory.createOntologyModel(defaultSpec, parse(ontology))));
+            return resolveImports(asserted(parse(ontology)));
         } catch (final Exception e) {
             throw new RuntimeException(e);
         }
     }
 
-    /** Resolve the closure of all owl:imports statements into a union model */
-    private OntModel resolveImports(final OntModel model) {
+    /** Resolve the closure of all owl:imports of the given ontology */
+    private Ont resolveImports(final Asserted ontology) {
+
+        // Start retrieving all direct imports at once; their closures are assembled below
+        final long generation = currentGeneration();
+        ontology.imports.forEach(imported -> fetch(imported, generation));
 
-        // if no imports, nothing to resolve
-        if (model.listObjectsOfProperty(model.getProperty(OWL_IMPORTS)).toSet().isEmpty()) {
-            return model;
+        final List<Graph> components = new ArrayList<>();
+        components.add(ontology.graph);
+
+        for (final String imported : ontology.imports) {
+            components.addAll(closure(imported).components);
         }
 
-        final OntModel out = ModelFactory.createOntologyModel(defaultSpec, model.getBaseModel());
+        return ont(components);
+    }
+
+    /** Ontology with the given IRI, including the closure of its owl:imports */
+    private Ont closure(final String iri) {
 
-        final Set<String> resolvedImports = new HashSet<>();
-        Set<String> unresolvedImports = imports(model, resolvedImports);
+        final Ont cached = closures.get(iri);
+        if (cached != null) {
+            return cached;
+        }
 
-        while (!unresolvedImports.isEmpty()) {
+        final long generation = currentGeneration();
 
-            for (final String unresolved : unresolvedImports) {
-                model.add(load(unresolved));
-                resolvedImports.add(unresolved);
+        final Map<String, Asserted> resolved = new LinkedHashMap<>();
 
+        for (Set<String> unresolved = Collections.singleton(iri); !unresolved.isEmpty();) {
+
+            // Fetch every ontology in this level of the import graph concurrently
+            final Map<String, CompletableFuture<Asserted>> level = new LinkedHashMap<>();
+            unresolved.forEach(ontology -> level.put(ontology, fetch(ontology, generation)));
+
+            final Set<String> next = new HashSet<>();
+            for (final Map.Entry<String, CompletableFuture<Asserted>> ontology : level.entrySet()) {
+                final Asserted asserted = join(ontology.getValue());
+                resolved.put(ontology.getKey(), asserted);
+                next.addAll(asserted.imports);
+            }
+
+            next.removeAll(resolved.keySet());
+            unresolved = next;
+        }
+
+        final Ont ont = ont(resolved.values().stream().map(a -> a.graph).collect(Collectors.toList()));
+
+        synchronized (index) {
+            if (cacheClosures && generation == this.generation) {
+                resolved.keySet().forEach(dependency -> dependents.computeIfAbsent(dependency,
+                        k -> new HashSet<>()).add(iri));
+                closures.put(iri, ont);
             }
-            unresolvedImports = imports(model, resolvedImports);
         }
 
-        // Since we manually resolved all imports, remove all owl:imports statements
-        out.removeAll(null, model.getProperty(OWL_IMPORTS), null);
+        return ont;
+    }
+
+    /** Ontology over the union of the given asserted graphs, each of which is included once */
+    private Ont ont(final Collection<Graph> components) {
+
+        // Graphs have identity semantics for equality, so this removes shared graphs included more than once.
+        final List<Graph> distinct = new ArrayList<>(new LinkedHashSet<>(components));
 
-        return out;
+        final Graph graph = distinct.size() == 1 ? distinct.get(0) : new MultiUnion(distinct.iterator());
+
+        return new Ont(ModelFactory.createOntologyModel(defaultSpec, ModelFactory.createModelForGraph(graph)),
+                distinct);
     }
 
-    private Set<String> imports(final Model model, final Set<String> resolved) {
-        return model.listObjectsOfProperty(model.getProperty(OWL_IMPORTS)).mapWith(RDFNode::asResource).mapWith(
-                Resource::getURI).filterDrop(uri -> resolved.contains(uri)).toSet();
+    /**
+     * Retrieve the asserted triples of an ontology in the background.
+     * <p>
+     * Shares any retrieval already in progress, unless it was started before the given generation; that retrieval
+     * may have read the ontology before it was invalidated, so is replaced by a new one.
+     * </p>
+     */
+    private CompletableFuture<Asserted> fetch(final String iri, final long generation) {
+
+        final Asserted cached = loaded.get(iri);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        final Fetch fetch = new Fetch(generation);
+
+        Fetch existing;
+        while ((existing = inFlight.putIfAbsent(iri, fetch)) != null) {
+            if (existing.generation >= generation) {
+                return existing.future;
+            }
+            if (inFlight.replace(iri, existing, fetch)) {
+                break;
+            }
+        }
+
+        try {
+            importExecutor.execute(() -> {
+                try {
+                    fetch.future.complete(direct(iri, generation));
+                } catch (final Throwable e) {
+                    fetch.future.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(iri, fetch);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            inFlight.remove(iri, fetch);
+            fetch.future.completeExceptionally(e);
+        }
+
+        return fetch.future;
     }
 
-    private Model load(final String uri) {
-        return load(URI.create(uri));
+    private static Asserted join(final CompletableFuture<Asserted> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
     }
 
-    private Model load(final URI uri) {
-        try (WebResource wr = registry.get(uri)) {
+    /** Asserted triples of the ontology with the given IRI as of the given generation, without resolving imports */
+    private Asserted direct(final String iri, final long generation) {
+
+        final Asserted cached = loaded.get(iri);
+        if (cached != null) {
+            return cached;
+        }
 
-            return parse(wr);
+        final URI location;
+        final Asserted asserted;
 
+        // This is our own cache of the ontology; it must not be filled from a cache that has yet to be invalidated
+        try (WebResource wr = FreshReads.of(() -> registry.get(URI.create(iri)))) {
+            location = wr.uri();
+            asserted = asserted(parse(wr));
         } catch (final Exception e) {
             throw new RuntimeException(e);
         }
+
+        synchronized (index) {
+            if (cacheClosures && generation == this.generation) {
+                if (location != null) {
+                    locations.computeIfAbsent(location, k -> new HashSet<>()).add(iri);
+                }
+                loaded.put(iri, asserted);
+            }
+        }
+
+        return asserted;
+    }
+
+    /** Separate the owl:imports of an ontology from the rest of its triples */
+    private static Asserted asserted(final Model ontology) {
+
+        final Set<String> imports = ontology.listObjectsOfProperty(ontology.getProperty(OWL_IMPORTS))
+                .filterKeep(RDFNode::isURIResource)
+                .mapWith(RDFNode::asResource)
+                .mapWith(Resource::getURI)
+                .toSet();
+
+        if (imports.isEmpty()) {
+            return new Asserted(ontology.getGraph(), imports);
+        }
+
+        // Since we manually resolve all imports, remove all owl:imports statements
+        final Model withoutImports = ModelFactory.createDefaultModel().add(ontology);
+        withoutImports.removeAll(null, withoutImports.getProperty(OWL_IMPORTS), null);
+
+        return new Asserted(withoutImports.getGraph(), imports);
+    }
+
+    private long currentGeneration() {
+        synchronized (index) {
+            return generation;
+        }
+    }
+
+    /** Forget the given ontology, and the closures of all ontologies that import it */
+    private void invalidate(final String iri) {
+        synchronized (index) {
+            generation++;
+            loaded.remove(iri);
+            closures.remove(iri);
+
+            final Set<String> affected = dependents.remove(iri);
+            if (affected != null) {
+                affected.forEach(closures::remove);
+                LOG.debug("Invalidated ontology <{}>, and closures {} that depend on it", iri, affected);
+            }
+        }
+    }
+
+    @Override
+    public void update() {
+        synchronized (index) {
+            generation++;
+            loaded.clear();
+            closures.clear();
+            dependents.clear();
+            locations.clear();
+        }
+    }
+
+    @Override
+    public void update(final URI inResponseTo) {
+        if (registry == null || !registry.hasInDomain(inResponseTo)) {
+            return;
+        }
+
+        final URI location = URI.create(inResponseTo.toString().replaceFirst(FCR_METADATA + "$", ""));
+
+        final Set<String> affected = new HashSet<>();
+        affected.add(inResponseTo.toString());
+        affected.add(location.toString());
+
+        synchronized (index) {
+            final Set<String> fromLocation = locations.remove(location);
+            if (fromLocation != null) {
+                affected.addAll(fromLocation);
+            }
+            affected.forEach(this::invalidate);
+        }
     }
 
     /** Make sure Jena doesn't resolve imported ontologies, we're doing that; */
@@ -169,26 +454,32 @@ public class JenaOntologyService implements OntologyService {
 
     @Override
     public Ont merge(final Ontology ontology1, final Ontology ontology2) {
-        final OntModel model = ModelFactory.createOntologyModel(defaultSpec);
+        final List<Graph> components = new ArrayList<>(((Ont) ontology1).components);
+        components.addAll(((Ont) ontology2).components);
 
-        model.add(ont(ontology1).getBaseModel());
-        model.add(ont(ontology2).getBaseModel());
-
-        return new Ont(model);
+        return ont(components);
     }
 
     @Override
     public Set<URI> inferClasses(final URI uri, final WebResource resource, final Ontology ontology) {
 
-        final OntModel model = resolveImports(ont(ontology));
-        model.add(parse(resource));
+        final Ont ont = (Ont) ontology;
+
+        // Only triples whose predicate the ontology knows about can contribute to inferring classes
+        final Set<Node> predicates = ont.predicates();
+        final Model data = parse(resource, resource.uri() == null ? "" : resource.uri().toString(),
+                triple -> predicates.contains(triple.getPredicate()));
 
-        final Individual individual = model.getIndividual(uri.toString());
+        // The ontology is already bound to the reasoner, so this reasons over the resource's triples only, and
+        // never modifies the ontology itself.
+        final InfModel model = ModelFactory.createInfModel(ont.reasoner(), data);
 
-        if (individual != null) {
-            return individual
-                    .listRDFTypes(false)
-                    .filterKeep(Resource::isURIResource)
+        final Resource individual = model.getResource(uri.toString());
+
+        if (data.listStatements(individual, null, (RDFNode) null).hasNext()) {
+            return model.listObjectsOfProperty(individual, model.getProperty(RDF_TYPE))
+                    .filterKeep(RDFNode::isURIResource)
+                    .mapWith(RDFNode::asResource)
                     .mapWith(Resource::getURI)
                     .mapWith(URI::create)
                     .toSet();
@@ -200,16 +491,137 @@ public class JenaOntologyService implements OntologyService {
 
     }
 
-    OntModel ont(final Ontology o) {
-        return ((Ont) o).model;
+    @Override
+    public Set<URI> assertedClasses(final URI uri, final WebResource resource) {
+        final Node individual = NodeFactory.createURI(uri.toString());
+        final Node type = NodeFactory.createURI(RDF_TYPE);
+
+        final Model data = parse(resource, resource.uri() == null ? "" : resource.uri().toString(),
+                triple -> triple.getSubject().equals(individual) && triple.getPredicate().equals(type));
+
+        return new HashSet<>(objectResourcesOf(uri.toString(), RDF_TYPE, data));
+    }
+
+    @Override
+    public List<Map.Entry<URI, URI>> statementsOf(final Ontology ontology, final URI property) {
+        final Model model = ((Ont) ontology).model();
+
+        return model.listStatements(null, model.getProperty(property.toString()), (RDFNode) null)
+                .mapWith(s -> (Map.Entry<URI, URI>) new SimpleImmutableEntry<>(
+                        uriOf(s.getSubject()), uriOf(s.getObject())))
+                .toList();
+    }
+
+    private static URI uriOf(final RDFNode node) {
+        return node.isURIResource() ? URI.create(node.asResource().getURI()) : null;
+    }
+
+    /** Retrieval of an ontology, and the generation it was started in */
+    private static class Fetch {
+
+        final long generation;
+
+        final CompletableFuture<Asserted> future = new CompletableFuture<>();
+
+        Fetch(final long generation) {
+            this.generation = generation;
+        }
+    }
+
+    /** Asserted triples of a single ontology, and the IRIs of the ontologies it imports */
+    private static class Asserted {
+
+        final Graph graph;
+
+        final Set<String> imports;
+
+        Asserted(final Graph graph, final Set<String> imports) {
+            this.graph = new GraphReadOnly(graph);
+            this.imports = imports;
+        }
     }
 
-    static class Ont implements Ontology {
+    /**
+     * Ontology backed by a Jena ontology model.
+     * <p>
+     * As a {@link JenaResource}, its {@link #model()} contains the asserted triples of the ontology and its resolved
+     * imports, without any inferred triples.
+     * </p>
+     * <p>
+     * The model is a read-only union of component graphs, one per ontology in the closure. Ontologies retrieved by IRI
+     * have a single graph that is shared by every closure and merged ontology that includes it, rather than copied.
+     * </p>
+     */
+    static class Ont implements Ontology, JenaResource {
 
         final OntModel model;
 
-        private Ont(final OntModel model) {
+        final List<Graph> components;
+
+        private volatile Set<Node> predicates;
+
+        private volatile Reasoner reasoner;
+
+        private Ont(final OntModel model, final List<Graph> components) {
             this.model = model;
+            this.components = Collections.unmodifiableList(components);
+        }
+
+        @Override
+        public Model model() {
+            return model.getBaseModel();
+        }
+
+        /**
+         * Reasoner with this ontology bound as its schema.
+         * <p>
+         * Binding is done once, so that the ontology's own rules are processed only once rather than for every
+         * instance reasoned over. The bound reasoner is shared by concurrent requests, each with its own inference
+         * graph over instance data.
+         * </p>
+         *
+         * @return The reasoner.
+         */
+        Reasoner reasoner() {
+            if (reasoner == null) {
+                synchronized (this) {
+                    if (reasoner == null) {
+                        reasoner = model.getSpecification().getReasoner().bindSchema(model.getBaseModel()
+                                .getGraph());
+                    }
+                }
+            }
+            return reasoner;
+        }
+
+        /**
+         * Predicates of instance data that may affect inference over this ontology.
+         * <p>
+         * This is every IRI mentioned in the ontology (a superset of the properties used in domains, ranges,
+         * restrictions, property axioms, etc), plus {@code rdf:type} and {@code owl:sameAs}. Triples with any other
+         * predicate cannot influence the classes inferred for an instance.
+         * </p>
+         *
+         * @return predicate nodes.
+         */
+        Set<Node> predicates() {
+            if (predicates == null) {
+                final Set<Node> found = new HashSet<>();
+                found.add(NodeFactory.createURI(RDF_TYPE));
+                found.add(NodeFactory.createURI(OWL_SAME_AS));
+
+                model.getBaseModel().getGraph().find(Node.ANY, Node.ANY, Node.ANY).forEachRemaining(t -> {
+                    if (t.getSubject().isURI()) {
+                        found.add(t.getSubject());
+                    }
+                    if (t.getObject().isURI()) {
+                        found.add(t.getObject());
+                    }
+                });
+
+                predicates = found;
+            }
+            return predicates;
         }
     }
 
@@ -19,6 +19,7 @@
 package org.fcrepo.apix.jena.impl;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.fcrepo.apix.jena.Util.objectLiteralsOf;
 import static org.fcrepo.apix.jena.Util.objectResourceOf;
 import static org.fcrepo.apix.jena.Util.objectResourcesOf;
 import static org.fcrepo.apix.jena.Util.parse;
@@ -32,25 +33,30 @@ import static org.fcrepo.apix.model.Ontologies.Service.PROP_HAS_ENDPOINT;
 import static org.fcrepo.apix.model.Ontologies.Service.PROP_HAS_SERVICE_INSTANCE;
 import static org.fcrepo.apix.model.Ontologies.Service.PROP_HAS_SERVICE_INSTANCE_REGISTRY;
 import static org.fcrepo.apix.model.Ontologies.Service.PROP_IS_SERVICE_INSTANCE_OF;
+import static org.fcrepo.apix.model.Ontologies.Service.PROP_WEIGHT;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.fcrepo.apix.jena.JenaResource;
-import org.fcrepo.apix.jena.Util;
 import org.fcrepo.apix.model.Service;
 import org.fcrepo.apix.model.ServiceInstance;
+import org.fcrepo.apix.model.WebResource;
+import org.fcrepo.apix.model.components.Batch;
+import org.fcrepo.apix.model.components.FreshReads;
 import org.fcrepo.apix.model.components.Initializer;
 import org.fcrepo.apix.model.components.Initializer.Initialization;
 import org.fcrepo.apix.model.components.Registry;
@@ -63,7 +69,6 @@ import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpHeaders;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPatch;
-import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
@@ -76,6 +81,11 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Jena-based service registry implementation,
+ * <p>
+ * Endpoints of service instances are kept in an in-memory table, so that resolving an endpoint by service URI (see
+ * {@link #instancesOf(URI)}) does not involve any I/O once a service has been looked up. The table holds only the
+ * endpoints and weights of instances; {@link ServiceInstance#instanceOf()} still looks up the service itself.
+ * </p>
  *
  * @author apb@jhu.edu
  */
@@ -121,8 +131,22 @@ public class JenaServiceRegistry extends WrappingRegistry implements ServiceRegi
         super.setRegistryDelegate(delegate);
     }
 
-    // Index mapping canonical URI to resource URI
-    private final ConcurrentHashMap<URI, URI> canonicalUriMap = new ConcurrentHashMap<>();
+    // Services and their canonical URIs. Immutable, replaced atomically while holding indexLock
+    private volatile ServiceIndex index = new ServiceIndex(Collections.emptyMap());
+
+    private final Object indexLock = new Object();
+
+    // Materialized instances of services, by service resource URI
+    private final Map<URI, ServiceInstanceRegistry> instanceTable = new ConcurrentHashMap<>();
+
+    // URIs of resources that materialized instances were read from, to the services they were read for.
+    private final Map<URI, Set<URI>> instanceSources = new HashMap<>();
+
+    // Incremented whenever materialized instances are discarded, guarded by instanceSources
+    private long instanceGeneration = 0;
+
+    // Materializations in progress, guarded by instanceSources
+    private final Set<Materialization> materializing = new HashSet<>();
 
     /** Initial update and re-indexing. */
     public void init() {
@@ -138,42 +162,110 @@ public class JenaServiceRegistry extends WrappingRegistry implements ServiceRegi
 
     @Override
     public void update() {
+        synchronized (indexLock) {
 
-        // For all resources in the registry, get the URIs of everything that calls itself a Service, or is explicitly
-        // registered as a service
-
-        final Set<URI> serviceURIs = Stream.concat(super.list().stream()
-                .map(this::get)
-                .map(Util::parse)
-                .flatMap(m -> m.listSubjectsWithProperty(
-                        m.getProperty(RDF_TYPE),
-                        m.getResource(CLASS_SERVICE))
-                        .mapWith(Resource::getURI)
-                        .toSet().stream()
-                        .map(URI::create)),
-                objectResourcesOf(null, PROP_CONTAINS_SERVICE, parse(this.get(
-                        registryContainer))).stream())
-                .collect(
-                        Collectors.toSet());
-
-        // Map canonical URI to service resource. If multiple service resources
-        // indicate the same canonical URI, pick one arbitrarily.
-        final Map<URI, URI> canonical = serviceURIs.stream()
-                .flatMap(this::attemptLookupService)
-                .collect(Collectors.toMap(s -> s.canonicalURI(), s -> s.uri(), (a, b) -> a));
+            // For all resources in the registry, get the URIs of everything that calls itself a Service, as well as
+            // everything explicitly registered as a service
+            final Map<URI, Map<URI, URI>> sources = new HashMap<>();
+            super.stream().forEach(resource -> sources.put(resource, servicesIn(resource)));
+            sources.put(registryContainer, registeredServices(Collections.emptyMap()));
 
-        canonicalUriMap.putAll(canonical);
+            index = new ServiceIndex(sources);
+        }
 
-        canonicalUriMap.keySet().removeIf(k -> !canonical.containsKey(k));
+        synchronized (instanceSources) {
+            instanceGeneration++;
+            instanceTable.clear();
+            instanceSources.clear();
+        }
     }
 
+    /**
+     * Update the index from a single changed resource.
+     * <p>
+     * If the resource is in the registry, only the services it describes are re-read. If it is the registry container
+     * itself, only services registered in it that have not been seen before are looked up. If it describes a service
+     * registered in the container, only that service is looked up again.
+     * </p>
+     */
     @Override
     public void update(final URI uri) {
-        if (hasInDomain(uri) && uri.getFragment() == null) {
-            // TODO: This can be optimized more. Right now, it re-scans all services,
-            // but at least filters out obvious redundancies (hash URIs) or inapplicable resources
-            update();
+        if (uri.getFragment() == null &&
+                (uri.equals(registryContainer) || hasInDomain(uri) || index.documents.contains(uri))) {
+            reindex(uri);
         }
+
+        refreshInstances(uri);
+    }
+
+    private void reindex(final URI uri) {
+        synchronized (indexLock) {
+            ServiceIndex updated = index;
+
+            if (uri.equals(registryContainer)) {
+                updated = updated.with(registryContainer, registeredServices(updated.declaredBy(registryContainer)));
+            } else {
+                if (delegate.hasInDomain(uri)) {
+                    updated = updated.with(uri, servicesIn(uri));
+                }
+
+                final Map<URI, URI> registered = new HashMap<>(updated.declaredBy(registryContainer));
+                final Set<URI> described = registered.keySet().stream()
+                        .filter(service -> withoutFragment(service).equals(uri))
+                        .collect(Collectors.toSet());
+
+                if (!described.isEmpty()) {
+                    for (final URI service : described) {
+                        registered.remove(service);
+                        attemptLookupService(service).forEach(svc -> registered.put(svc.uri(), svc.canonicalURI()));
+                    }
+                    updated = updated.with(registryContainer, registered);
+                }
+            }
+
+            index = updated;
+        }
+    }
+
+    // Services described in a resource in the registry, mapped to their canonical URIs
+    private Map<URI, URI> servicesIn(final URI resource) {
+        final Model model;
+        try {
+            model = parse(get(resource));
+        } catch (final RuntimeException e) {
+            if (e instanceof ResourceNotFoundException || e.getCause() instanceof ResourceNotFoundException) {
+                LOG.debug("Service resource {} is gone", resource);
+                return Collections.emptyMap();
+            }
+            throw e;
+        }
+
+        final Map<URI, URI> services = new HashMap<>();
+        model.listSubjectsWithProperty(model.getProperty(RDF_TYPE), model.getResource(CLASS_SERVICE))
+                .filterKeep(Resource::isURIResource)
+                .forEachRemaining(s -> {
+                    final List<URI> canonical = objectResourcesOf(s.getURI(), PROP_CANONICAL, model);
+                    services.put(URI.create(s.getURI()), canonical.isEmpty() ? URI.create(s.getURI()) : canonical
+                            .get(0));
+                });
+
+        return services;
+    }
+
+    // Services explicitly registered in the registry container, mapped to their canonical URIs.
+    private Map<URI, URI> registeredServices(final Map<URI, URI> known) {
+        final Map<URI, URI> services = new HashMap<>();
+
+        for (final URI service : objectResourcesOf(null, PROP_CONTAINS_SERVICE, parse(this.get(
+                registryContainer)))) {
+            if (known.containsKey(service)) {
+                services.put(service, known.get(service));
+            } else {
+                attemptLookupService(service).forEach(svc -> services.put(svc.uri(), svc.canonicalURI()));
+            }
+        }
+
+        return services;
     }
 
     @Override
@@ -194,7 +286,11 @@ public class JenaServiceRegistry extends WrappingRegistry implements ServiceRegi
                     registryContainer), e);
         }
 
-        update(uri);
+        // We just changed the registry, so must not read it back from a cache
+        FreshReads.run(() -> {
+            update(registryContainer);
+            refreshInstances(uri);
+        });
     }
 
     private InputStream patchAddService(final URI service) {
@@ -212,36 +308,34 @@ public class JenaServiceRegistry extends WrappingRegistry implements ServiceRegi
         init.await();
         LOG.debug("POST: Creating service instance registry");
 
-        final HttpPost post = new HttpPost(service.uri());
-        post.setHeader(HttpHeaders.CONTENT_TYPE, "text/turtle");
-        post.setEntity(new InputStreamEntity(this.getClass().getResourceAsStream(
-                "objects/service-instance-registry.ttl")));
-
-        final URI uri;
-        try (CloseableHttpResponse resp = execute(post)) {
-            uri = URI.create(resp.getFirstHeader(HttpHeaders.LOCATION).getValue());
-        } catch (final Exception e) {
-            throw new RuntimeException("Could not create service instance registry", e);
-        }
+        // Create the registry, and mark its instances as instances of the service, in one transaction if possible
+        try (Batch batch = delegate.batch()) {
+            final URI uri = batch.post(service.uri(), WebResource.of(this.getClass().getResourceAsStream(
+                    "objects/service-instance-registry.ttl"), "text/turtle"));
 
-        final HttpPatch patch = new HttpPatch(uri);
-        patch.setHeader(HttpHeaders.CONTENT_TYPE, SPARQL_UPDATE);
-        patch.setEntity(new StringEntity(String.format(
-                "INSERT {?instance <%s> <%s> .} WHERE {?instance a <%s> .}",
-                PROP_IS_SERVICE_INSTANCE_OF, service.uri(), CLASS_SERVICE_INSTANCE), UTF_8));
+            batch.patch(uri, String.format(
+                    "INSERT {?instance <%s> <%s> .} WHERE {?instance a <%s> .}",
+                    PROP_IS_SERVICE_INSTANCE_OF, service.uri(), CLASS_SERVICE_INSTANCE));
 
-        try (CloseableHttpResponse resp = execute(patch)) {
-            LOG.info("Updating instance registry for {}", service.uri());
+            batch.commit();
+            LOG.info("Created instance registry <{}> for {}", uri, service.uri());
         } catch (final Exception e) {
-            throw new RuntimeException("Could not update service instance registry", e);
+            throw new RuntimeException("Could not create service instance registry", e);
         }
 
-        return instancesOf(getService(service.uri()));
+        return FreshReads.of(() -> {
+            refreshInstances(service.uri());
+            return instancesOf(getService(service.uri()));
+        });
     }
 
     @Override
     public ServiceInstanceRegistry instancesOf(final Service service) {
         init.await();
+        return instancesOf(service, instanceRegistryOf(service));
+    }
+
+    private URI instanceRegistryOf(final Service service) {
         final URI registryURI = objectResourceOf(service.uri().toString(), PROP_HAS_SERVICE_INSTANCE_REGISTRY, parse(
                 service));
 
@@ -249,39 +343,258 @@ public class JenaServiceRegistry extends WrappingRegistry implements ServiceRegi
             throw new ResourceNotFoundException("No service instance registry found for service " + service.uri());
         }
 
+        return registryURI;
+    }
+
+    private LdpServiceInstanceRegistry instancesOf(final Service service, final URI registryURI) {
+
         // TODO: Allow this to be pluggable to different service instance registry implementations
 
-        final Model registry = getRegistry(registryURI, service);
+        return new LdpServiceInstanceRegistry(registryURI, getRegistry(registryURI, service), service);
+    }
 
-        return new ServiceInstanceRegistry() {
+    /**
+     * Instances of the given service, from the in-memory instance table.
+     * <p>
+     * The first lookup of a service reads its service resource, instance registry, and instances, and retains the
+     * endpoints found. Subsequent lookups involve no I/O. Entries are refreshed when {@link #update(URI)} is called
+     * for any of the resources they were read from, or when endpoints are added through this registry.
+     * </p>
+     */
+    @Override
+    public ServiceInstanceRegistry instancesOf(final URI service) {
+        init.await();
+        final URI key = resourceURI(service);
 
-            @Override
-            public List<ServiceInstance> instances() {
-                return objectResourcesOf(registryURI.toString(), PROP_HAS_SERVICE_INSTANCE, registry).stream()
-                        .map(uri -> new LdpServiceInstanceImpl(uri, service))
-                        .collect(Collectors.toList());
-            }
+        final ServiceInstanceRegistry materialized = instanceTable.get(key);
+        if (materialized != null) {
+            return materialized;
+        }
 
-            @Override
-            public URI addEndpoint(final URI endpoint) {
-                LOG.debug("PATCH: Adding endpoint <{}> to <{}>", endpoint, registryURI);
-
-                final HttpPatch patch = new HttpPatch(registryURI);
-                patch.setHeader(HttpHeaders.CONTENT_TYPE, SPARQL_UPDATE);
-                patch.setEntity(new StringEntity(String.format(
-                        "INSERT {?instance <%s> <%s> .} WHERE {?instance a <%s> .}",
-                        PROP_HAS_ENDPOINT, endpoint, CLASS_SERVICE_INSTANCE), UTF_8));
-
-                try (CloseableHttpResponse resp = execute(patch)) {
-                    LOG.info("Adding endpoint <{}> to <{}>", endpoint, registryURI);
-                } catch (final Exception e) {
-                    throw new RuntimeException(String.format("Failed adding endpoint <%s> to <%s>", endpoint,
-                            registryURI), e);
+        return materialize(key);
+    }
+
+    private ServiceInstanceRegistry materialize(final URI serviceURI) {
+
+        final Materialization reading = new Materialization();
+        synchronized (instanceSources) {
+            reading.generation = instanceGeneration;
+            materializing.add(reading);
+        }
+
+        final MaterializedInstanceRegistry materialized;
+        try {
+            reading.read(serviceURI);
+            try (Service service = getService(serviceURI)) {
+                final URI registryURI = instanceRegistryOf(service);
+                reading.read(registryURI);
+
+                final LdpServiceInstanceRegistry registry = instancesOf(service, registryURI);
+
+                final List<ServiceInstance> instances = new ArrayList<>();
+                for (final URI instanceURI : registry.instanceURIs()) {
+                    reading.read(instanceURI);
+                    final ServiceInstance instance = new LdpServiceInstanceImpl(instanceURI, service);
+                    instances.add(new MaterializedServiceInstance(serviceURI, instance.endpoints(), instance
+                            .weight()));
                 }
 
-                return registryURI;
+                materialized = new MaterializedInstanceRegistry(registry.registryURI, instances);
+            } catch (final RuntimeException e) {
+                throw e;
+            } catch (final Exception e) {
+                throw new RuntimeException(e);
             }
-        };
+        } finally {
+            synchronized (instanceSources) {
+                materializing.remove(reading);
+            }
+        }
+
+        synchronized (instanceSources) {
+            if (!reading.stale && reading.generation == instanceGeneration) {
+                instanceTable.put(serviceURI, materialized);
+                reading.sources.forEach(source -> instanceSources.computeIfAbsent(source,
+                        k -> new HashSet<>()).add(serviceURI));
+            }
+        }
+
+        LOG.debug("Materialized {} instances of service <{}>", materialized.instances.size(), serviceURI);
+
+        return materialized;
+    }
+
+    /** Re-read any materialized service instances that were read from the given resource */
+    private void refreshInstances(final URI uri) {
+        final URI source = withoutFragment(uri);
+        final Set<URI> affected;
+
+        synchronized (instanceSources) {
+
+            // Materializations that have already read the resource must not be retained
+            materializing.stream()
+                    .filter(m -> m.sources.contains(source))
+                    .forEach(m -> m.stale = true);
+
+            affected = instanceSources.remove(source);
+            if (affected == null) {
+                return;
+            }
+
+            instanceGeneration++;
+            affected.forEach(instanceTable::remove);
+        }
+
+        for (final URI service : affected) {
+            try {
+                materialize(service);
+            } catch (final Exception e) {
+                LOG.debug("Could not refresh instances of service <{}>, will retry on next lookup", service, e);
+            }
+        }
+    }
+
+    /**
+     * Resources read by a materialization in progress.
+     * <p>
+     * Each resource is recorded before it is read, so that a change to it seen while the materialization is in
+     * progress marks the result as stale. All fields are guarded by instanceSources.
+     * </p>
+     */
+    private class Materialization {
+
+        final Set<URI> sources = new HashSet<>();
+
+        long generation;
+
+        boolean stale;
+
+        void read(final URI resource) {
+            synchronized (instanceSources) {
+                sources.add(withoutFragment(resource));
+            }
+        }
+    }
+
+    private URI addEndpoint(final URI registryURI, final URI endpoint) {
+        LOG.debug("PATCH: Adding endpoint <{}> to <{}>", endpoint, registryURI);
+
+        final HttpPatch patch = new HttpPatch(registryURI);
+        patch.setHeader(HttpHeaders.CONTENT_TYPE, SPARQL_UPDATE);
+        patch.setEntity(new StringEntity(String.format(
+                "INSERT {?instance <%s> <%s> .} WHERE {?instance a <%s> .}",
+                PROP_HAS_ENDPOINT, endpoint, CLASS_SERVICE_INSTANCE), UTF_8));
+
+        try (CloseableHttpResponse resp = execute(patch)) {
+            LOG.info("Adding endpoint <{}> to <{}>", endpoint, registryURI);
+        } catch (final Exception e) {
+            throw new RuntimeException(String.format("Failed adding endpoint <%s> to <%s>", endpoint,
+                    registryURI), e);
+        }
+
+        refreshInstances(registryURI);
+
+        return registryURI;
+    }
+
+    private static URI withoutFragment(final URI uri) {
+        try {
+            return new URI(uri.getScheme(), uri.getSchemeSpecificPart(), null);
+        } catch (final URISyntaxException e) {
+            throw new RuntimeException("Shoud never happen", e);
+        }
+    }
+
+    class LdpServiceInstanceRegistry implements ServiceInstanceRegistry {
+
+        final URI registryURI;
+
+        final Model registry;
+
+        final Service service;
+
+        LdpServiceInstanceRegistry(final URI registryURI, final Model registry, final Service service) {
+            this.registryURI = registryURI;
+            this.registry = registry;
+            this.service = service;
+        }
+
+        @Override
+        public List<ServiceInstance> instances() {
+            return instanceURIs().stream()
+                    .map(uri -> new LdpServiceInstanceImpl(uri, service))
+                    .collect(Collectors.toList());
+        }
+
+        List<URI> instanceURIs() {
+            return objectResourcesOf(registryURI.toString(), PROP_HAS_SERVICE_INSTANCE, registry);
+        }
+
+        @Override
+        public URI addEndpoint(final URI endpoint) {
+            return JenaServiceRegistry.this.addEndpoint(registryURI, endpoint);
+        }
+    }
+
+    /** Immutable snapshot of a service instance registry */
+    class MaterializedInstanceRegistry implements ServiceInstanceRegistry {
+
+        final URI registryURI;
+
+        final List<ServiceInstance> instances;
+
+        MaterializedInstanceRegistry(final URI registryURI, final List<ServiceInstance> instances) {
+            this.registryURI = registryURI;
+            this.instances = Collections.unmodifiableList(instances);
+        }
+
+        @Override
+        public List<ServiceInstance> instances() {
+            return instances;
+        }
+
+        @Override
+        public URI addEndpoint(final URI endpoint) {
+            return JenaServiceRegistry.this.addEndpoint(registryURI, endpoint);
+        }
+    }
+
+    /** Immutable snapshot of a service instance */
+    class MaterializedServiceInstance implements ServiceInstance {
+
+        final URI service;
+
+        final List<URI> endpoints;
+
+        final int weight;
+
+        MaterializedServiceInstance(final URI service, final List<URI> endpoints, final int weight) {
+            this.service = service;
+            this.endpoints = Collections.unmodifiableList(new ArrayList<>(endpoints));
+            this.weight = weight;
+        }
+
+        @Override
+        public List<URI> endpoints() {
+            return endpoints;
+        }
+
+        @Override
+        public int weight() {
+            return weight;
+        }
+
+        /**
+         * Look up the service this is an instance of.
+         * <p>
+         * Services are not retained in the instance table, so unlike the endpoints and weight of the instance, this
+         * retrieves the service from the registry.
+         * </p>
+         */
+        @Override
+        public Service instanceOf() {
+            return getService(service);
+        }
     }
 
     class LdpServiceInstanceImpl implements ServiceInstance {
@@ -303,6 +616,22 @@ public class JenaServiceRegistry extends WrappingRegistry implements ServiceRegi
             return objectResourcesOf(uri, PROP_HAS_ENDPOINT, model);
         }
 
+        @Override
+        public int weight() {
+            final List<String> weights = objectLiteralsOf(uri, PROP_WEIGHT, model);
+
+            if (weights.isEmpty()) {
+                return 1;
+            }
+
+            try {
+                return Math.max(0, Integer.parseInt(weights.get(0).trim()));
+            } catch (final NumberFormatException e) {
+                LOG.warn("Ignoring invalid weight '{}' of service instance <{}>", weights.get(0), uri);
+                return 1;
+            }
+        }
+
         @Override
         public Service instanceOf() {
             return service;
@@ -318,13 +647,20 @@ public class JenaServiceRegistry extends WrappingRegistry implements ServiceRegi
     @Override
     public Collection<URI> list() {
         init.await();
-        return new HashSet<>(canonicalUriMap.values());
+        return new HashSet<>(index.services);
+    }
+
+    @Override
+    public Stream<URI> stream() {
+        init.await();
+        return index.services.stream();
     }
 
     @Override
     public boolean contains(final URI uri) {
         init.await();
-        return canonicalUriMap.containsKey(uri) || canonicalUriMap.containsValue(uri);
+        final ServiceIndex current = index;
+        return current.canonical.containsKey(uri) || current.services.contains(uri);
     }
 
     class ServiceImpl extends WrappingResource implements Service, JenaResource {
@@ -390,13 +726,13 @@ public class JenaServiceRegistry extends WrappingRegistry implements ServiceRegi
 
     // Try looking in canonical map first
     private URI resourceURI(final URI uri) {
-        return Optional.ofNullable(canonicalUriMap.get(uri)).orElse(uri);
+        return index.canonical.getOrDefault(uri, uri);
     }
 
     @Override
     public boolean hasInDomain(final URI uri) {
         init.await();
-        return delegate.hasInDomain(uri) || canonicalUriMap.values().contains(uri);
+        return delegate.hasInDomain(uri) || index.services.contains(uri);
     }
 
     private Stream<Service> attemptLookupService(final URI uri) {
@@ -408,6 +744,64 @@ public class JenaServiceRegistry extends WrappingRegistry implements ServiceRegi
         }
     }
 
+    /**
+     * Immutable index of services.
+     * <p>
+     * Services are recorded by the source they were found in: either a resource in the registry that describes them,
+     * or the registry container for explicitly registered services. Forward (canonical URI to service) and reverse
+     * indexes are derived from these.
+     * </p>
+     */
+    private static final class ServiceIndex {
+
+        // Source to the services it declares, mapped to their canonical URIs
+        final Map<URI, Map<URI, URI>> sources;
+
+        // Canonical URI to service
+        final Map<URI, URI> canonical;
+
+        // All indexed services
+        final Set<URI> services;
+
+        // Resources that describe indexed services
+        final Set<URI> documents;
+
+        ServiceIndex(final Map<URI, Map<URI, URI>> sources) {
+            final Map<URI, URI> canonical = new HashMap<>();
+            final Set<URI> services = new HashSet<>();
+            final Set<URI> documents = new HashSet<>();
+
+            // If multiple service resources indicate the same canonical URI, pick one arbitrarily.
+            sources.values().forEach(declared -> declared.forEach((service, canonicalURI) -> {
+                if (canonical.putIfAbsent(canonicalURI, service) == null) {
+                    services.add(service);
+                }
+                documents.add(withoutFragment(service));
+            }));
+
+            this.sources = Collections.unmodifiableMap(sources);
+            this.canonical = Collections.unmodifiableMap(canonical);
+            this.services = Collections.unmodifiableSet(services);
+            this.documents = Collections.unmodifiableSet(documents);
+        }
+
+        Map<URI, URI> declaredBy(final URI source) {
+            return sources.getOrDefault(source, Collections.emptyMap());
+        }
+
+        ServiceIndex with(final URI source, final Map<URI, URI> declared) {
+            final Map<URI, Map<URI, URI>> updated = new HashMap<>(sources);
+
+            if (declared.isEmpty()) {
+                updated.remove(source);
+            } else {
+                updated.put(source, Collections.unmodifiableMap(new HashMap<>(declared)));
+            }
+
+            return new ServiceIndex(updated);
+        }
+    }
+
     private CloseableHttpResponse execute(final HttpUriRequest req) throws Exception {
 
         final CloseableHttpResponse resp = client.execute(req);
@@ -18,35 +18,72 @@
 
 package org.fcrepo.apix.jena.impl;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.fcrepo.apix.model.Ontologies.LDP_CONTAINS;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.fcrepo.apix.jena.Util;
 import org.fcrepo.apix.model.WebResource;
+import org.fcrepo.apix.model.components.Batch;
+import org.fcrepo.apix.model.components.FreshReads;
 import org.fcrepo.apix.model.components.Initializer;
 import org.fcrepo.apix.model.components.Initializer.Initialization;
 import org.fcrepo.apix.model.components.Registry;
+import org.fcrepo.apix.model.components.Updateable;
 
+import org.apache.http.Header;
 import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpPatch;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
-import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,10 +94,20 @@ import org.slf4j.LoggerFactory;
  * individual resources. {@link #put(WebResource)} will issue a PUT or GET to a given container as appropriate to
  * create or update a resource.
  * </p>
+ * <p>
+ * Membership of the container is kept locally, so that {@link #contains(URI)} doesn't need to retrieve the
+ * container. It is loaded at initialization, kept current by {@link #put(WebResource)} and {@link #delete(URI)}, and
+ * revalidated against the container's ETag whenever {@link #update(URI)} is notified of a change in the container.
+ * {@link #list()} always revalidates, so only re-reads the container if it has changed.
+ * </p>
+ * <p>
+ * Resources written through this registry are re-read with {@link FreshReads} the next time they are looked up, so
+ * that the delegate never answers with a representation cached before the write.
+ * </p>
  *
  * @author apb@jhu.edu
  */
-public class LdpContainerRegistry implements Registry {
+public class LdpContainerRegistry implements Registry, Updateable {
 
     private Registry delegate;
 
@@ -78,6 +125,27 @@ public class LdpContainerRegistry implements Registry {
 
     private Initializer initializer;
 
+    // Container members and the ETag they were read at, or null if not yet known. Replaced by compare-and-set.
+    private final AtomicReference<Membership> membership = new AtomicReference<>();
+
+    private int pageSize = 0;
+
+    // Resources written since they were last looked up, and the sequence number of the latest write to each
+    private final Map<URI, Long> written = new ConcurrentHashMap<>();
+
+    private final AtomicLong writes = new AtomicLong();
+
+    private static final String MEMBERSHIP_MEDIA_TYPES = "application/n-triples, text/turtle;q=0.9";
+
+    private static final String LINK = "Link";
+
+    private static final String FCR_TX = "fcr:tx";
+
+    private static final String SPARQL_UPDATE = "application/sparql-update";
+
+    // <uri>; rel="rel1 rel2", capturing the URI and relations.
+    private static final Pattern LINK_VALUE = Pattern.compile("<([^>]*)>[^<]*?;\\s*rel=\"?([^\";,]*)");
+
     private static final Logger LOG = LoggerFactory.getLogger(LdpContainerRegistry.class);
 
     /**
@@ -114,31 +182,39 @@ public class LdpContainerRegistry implements Registry {
     }
 
     /**
-     * Create the container if it doesn't exist.
+     * Create the container if it doesn't exist, and load its membership.
      */
     public void init() {
 
         init = initializer.initialize(() -> {
 
-            if (!create) {
-                return;
+            if (create) {
+                createContainer();
+            }
+
+            try {
+                readMembers(false);
+            } catch (final Exception e) {
+                LOG.warn("Could not read members of container {}, will try again when needed", containerId, e);
             }
+        });
+    }
 
-            boolean found = false;
+    private void createContainer() {
+        boolean found = false;
 
-            while (!found) {
-                LOG.info("Looking for container {}", containerId);
-                found = exists(containerId);
+        while (!found) {
+            LOG.info("Looking for container {}", containerId);
+            found = exists(containerId);
 
-                if (!found) {
-                    LOG.info("Container {} does not exist, adding", containerId);
-                    final URI added = put(WebResource.of(initialContent(), "text/turtle",
-                            containerId, null), false);
-                    LOG.info("Added container {} as <{}>", containerId, added);
-                    found = true;
-                }
+            if (!found) {
+                LOG.info("Container {} does not exist, adding", containerId);
+                final URI added = put(WebResource.of(initialContent(), "text/turtle",
+                        containerId, null), false);
+                LOG.info("Added container {} as <{}>", containerId, added);
+                found = true;
             }
-        });
+        }
     }
 
     /**
@@ -150,6 +226,15 @@ public class LdpContainerRegistry implements Registry {
         this.containerId = containerId;
     }
 
+    /**
+     * Set the number of members to ask for in each page of the container, if the server supports LDP paging.
+     *
+     * @param pageSize number of members, or 0 to leave page size up to the server.
+     */
+    public void setPageSize(final int pageSize) {
+        this.pageSize = pageSize;
+    }
+
     /**
      * Indicate whether to treat resources in this registry as binaries
      *
@@ -185,7 +270,25 @@ public class LdpContainerRegistry implements Registry {
     @Override
     public WebResource get(final URI id) {
         init.await();
-        return delegate.get(id);
+
+        final URI resource = withoutFragment(id);
+        final Long write = written.get(resource);
+        if (write == null) {
+            return delegate.get(id);
+        }
+
+        final WebResource fresh = FreshReads.of(() -> delegate.get(id));
+        written.remove(resource, write);
+        return fresh;
+    }
+
+    // Note that a resource has been written, so must be re-read
+    private void written(final URI uri) {
+        written.put(withoutFragment(uri), writes.incrementAndGet());
+    }
+
+    private static URI withoutFragment(final URI uri) {
+        return uri.getFragment() != null ? URI.create(uri.toString().replaceFirst("#.*$", "")) : uri;
     }
 
     @Override
@@ -196,10 +299,61 @@ public class LdpContainerRegistry implements Registry {
     @Override
     public URI put(final WebResource resource, final boolean asBinary) {
         init.await();
+
+        final URI uri = write(resource, asBinary, UnaryOperator.identity());
+        written(uri);
+
+        if (isMember(uri)) {
+            written(containerId);
+            updateMembers(uri, true);
+        }
+
+        return uri;
+    }
+
+    @Override
+    public URI post(final URI container, final WebResource resource) {
+        init.await();
+
+        final URI uri = post(container, resource, UnaryOperator.identity());
+        written(uri);
+        written(container);
+
+        if (isMember(uri)) {
+            written(containerId);
+            updateMembers(uri, true);
+        }
+
+        return uri;
+    }
+
+    @Override
+    public void patch(final URI uri, final String sparqlUpdate) {
+        init.await();
+        patch(uri, sparqlUpdate, UnaryOperator.identity());
+        written(uri);
+    }
+
+    /**
+     * Start a batch of writes in a single Fedora transaction.
+     * <p>
+     * Writes in the batch are made, in order, over the client's persistent connections while the transaction is open,
+     * and take effect with a single commit. Resources outside the repository that hosts this registry's container
+     * cannot take part in the transaction, and are written immediately.
+     * </p>
+     */
+    @Override
+    public Batch batch() {
+        init.await();
+        return new Transaction();
+    }
+
+    // PUT or POST a resource, with request URIs mapped by the given scope, returning the URI given by the server
+    private URI write(final WebResource resource, final boolean asBinary, final UnaryOperator<URI> scope) {
         HttpEntityEnclosingRequestBase request = null;
 
         if (resource.uri() == null || !resource.uri().isAbsolute()) {
-            request = new HttpPost(containerId);
+            request = new HttpPost(scope.apply(containerId));
             final String name = slugText(resource);
             if (name != null) {
                 request.addHeader("Slug", name);
@@ -211,7 +365,7 @@ public class LdpContainerRegistry implements Registry {
             }
 
         } else {
-            request = new HttpPut(resource.uri());
+            request = new HttpPut(scope.apply(resource.uri()));
             if (!asBinary) {
                 request.addHeader("Prefer", "handling=lenient; received=\"minimal\"");
             }
@@ -240,7 +394,41 @@ public class LdpContainerRegistry implements Registry {
             throw new RuntimeException(String.format("Error executing %s request to %s", request.getClass()
                     .getSimpleName(), request.getURI().toString()), e);
         }
+    }
 
+    // POST a resource to a container, with request URIs mapped by the given scope, returning the URI given by the
+    // server
+    private URI post(final URI container, final WebResource resource, final UnaryOperator<URI> scope) {
+        final HttpPost post = new HttpPost(scope.apply(container));
+
+        final String name = slugText(resource);
+        if (name != null) {
+            post.addHeader("Slug", name);
+        }
+
+        if (resource.representation() != null) {
+            post.setEntity(new InputStreamEntity(resource.representation()));
+        }
+        post.setHeader(HttpHeaders.CONTENT_TYPE, resource.contentType());
+
+        try (CloseableHttpResponse response = execute(post)) {
+            return URI.create(response.getFirstHeader(HttpHeaders.LOCATION).getValue());
+        } catch (final IOException e) {
+            throw new RuntimeException("Error executing POST request to " + container, e);
+        }
+    }
+
+    // PATCH a resource, with request URIs mapped by the given scope
+    private void patch(final URI uri, final String sparqlUpdate, final UnaryOperator<URI> scope) {
+        final HttpPatch patch = new HttpPatch(scope.apply(uri));
+        patch.setHeader(HttpHeaders.CONTENT_TYPE, SPARQL_UPDATE);
+        patch.setEntity(new StringEntity(sparqlUpdate, UTF_8));
+
+        try (CloseableHttpResponse response = execute(patch)) {
+            LOG.debug("Patched <{}>", patch.getURI());
+        } catch (final IOException e) {
+            throw new RuntimeException("Error executing PATCH request to " + uri, e);
+        }
     }
 
     @Override
@@ -251,16 +439,7 @@ public class LdpContainerRegistry implements Registry {
     @Override
     public Collection<URI> list() {
         init.await();
-        try {
-            final Model model = Util.parse(delegate.get(containerId));
-
-            return model.listObjectsOfProperty(model.getProperty(LDP_CONTAINS)).mapWith(
-                    RDFNode::asResource)
-                    .mapWith(Resource::getURI).mapWith(URI::create).toSet();
-        } catch (final Exception e) {
-            throw new RuntimeException("Error reading from " + containerId, e);
-        }
-
+        return readMembers(true);
     }
 
     @Override
@@ -274,6 +453,10 @@ public class LdpContainerRegistry implements Registry {
         } catch (final Exception e) {
             throw new RuntimeException(uri.toString(), e);
         }
+
+        written(uri);
+        written(containerId);
+        updateMembers(uri, false);
     }
 
     private boolean exists(final URI uri) {
@@ -287,7 +470,211 @@ public class LdpContainerRegistry implements Registry {
     @Override
     public boolean contains(final URI id) {
         init.await();
-        return list().contains(id);
+        return members().contains(id);
+    }
+
+    /**
+     * Re-read the container's membership if it has changed.
+     */
+    @Override
+    public void update() {
+        init.await();
+        readMembers(true);
+    }
+
+    /**
+     * Re-read the container's membership if the given resource is in the container, and the container has changed.
+     */
+    @Override
+    public void update(final URI inResponseTo) {
+        if (hasInDomain(inResponseTo)) {
+            update();
+        }
+    }
+
+    private Set<URI> members() {
+        final Membership current = membership.get();
+        return current != null ? current.members : readMembers(false);
+    }
+
+    /*
+     * Read the container's members. If only reading when changed, the container's ETag is compared with the ETag
+     * from when members were last read, and members are only read if they differ.
+     *
+     * No lock is held while reading. The result replaces the known membership only if it has not been replaced
+     * since reading began, so that a concurrent write or read is never overwritten by an older one.
+     */
+    private Set<URI> readMembers(final boolean ifChanged) {
+        final Membership before = membership.get();
+        final String etag = ifChanged ? etag(containerId) : null;
+
+        if (ifChanged && before != null && etag != null && etag.equals(before.etag)) {
+            return before.members;
+        }
+
+        final Set<URI> read = Collections.unmodifiableSet(stream().collect(Collectors.toSet()));
+        LOG.debug("Read {} members of container {}", read.size(), containerId);
+
+        if (!membership.compareAndSet(before, new Membership(read, etag))) {
+            LOG.debug("Membership of container {} changed while reading it, keeping the newer", containerId);
+        }
+        return read;
+    }
+
+    /**
+     * Lazily stream the members of the container.
+     * <p>
+     * Only <code>ldp:contains</code> objects are kept as the container's representation is parsed. If the server
+     * pages the container, each page is retrieved only once the previous page has been consumed, so that memory is
+     * bounded by page size rather than by the size of the container.
+     * </p>
+     */
+    @Override
+    public Stream<URI> stream() {
+        init.await();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new MemberIterator(containerId),
+                Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Iterates over the members of a container, page by page.
+     */
+    private class MemberIterator implements Iterator<URI> {
+
+        private URI nextPage;
+
+        private Iterator<URI> page = Collections.emptyIterator();
+
+        MemberIterator(final URI firstPage) {
+            this.nextPage = firstPage;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext() && nextPage != null) {
+                final URI current = nextPage;
+                nextPage = null;
+                page = readPage(current, next -> nextPage = next).iterator();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public URI next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+    }
+
+    // Read the members listed in one page of a container, and the URI of the next page, if any.
+    private List<URI> readPage(final URI uri, final Consumer<URI> nextPage) {
+        final HttpGet get = new HttpGet(uri);
+        get.setHeader(HttpHeaders.ACCEPT, MEMBERSHIP_MEDIA_TYPES);
+        if (pageSize > 0) {
+            get.setHeader("Prefer", String.format("return=representation; max-member-count=\"%d\"", pageSize));
+        }
+
+        try (CloseableHttpResponse response = client.execute(get)) {
+            final StatusLine status = response.getStatusLine();
+            if (status.getStatusCode() != HttpStatus.SC_OK) {
+                throw new RuntimeException(String.format("Could not list members of %s: %s", uri, status));
+            }
+
+            final List<URI> members = new ArrayList<>();
+            final Node contains = NodeFactory.createURI(LDP_CONTAINS);
+
+            final StreamRDF sink = new StreamRDFBase() {
+
+                @Override
+                public void triple(final Triple triple) {
+                    if (contains.equals(triple.getPredicate()) && triple.getObject().isURI()) {
+                        members.add(URI.create(triple.getObject().getURI()));
+                    }
+                }
+            };
+
+            final ContentType contentType = ContentType.getOrDefault(response.getEntity());
+
+            final Lang lang = Util.rdfLanguage(contentType.getMimeType());
+
+            try (InputStream in = response.getEntity().getContent()) {
+                RDFDataMgr.parse(sink, in, uri.toString(), lang != null ? lang : Lang.TURTLE);
+            }
+
+            nextPage.accept(nextPage(uri, response));
+            LOG.debug("Read {} members from {}", members.size(), uri);
+
+            return members;
+        } catch (final IOException e) {
+            throw new RuntimeException("Error reading from " + uri, e);
+        }
+    }
+
+    // The link to the next page, as per LDP paging
+    private static URI nextPage(final URI page, final HttpResponse response) {
+        for (final Header link : response.getHeaders(LINK)) {
+            final Matcher m = LINK_VALUE.matcher(link.getValue());
+            while (m.find()) {
+                if (Arrays.asList(m.group(2).trim().split("\\s+")).contains("next")) {
+                    return page.resolve(m.group(1));
+                }
+            }
+        }
+        return null;
+    }
+
+    private void updateMembers(final URI uri, final boolean present) {
+        updateMembers(Collections.singletonMap(uri, present));
+    }
+
+    // Apply changes in membership (true if present, false if absent) in one copy of the member set
+    private void updateMembers(final Map<URI, Boolean> changes) {
+        while (true) {
+            final Membership before = membership.get();
+            if (before == null || changes.entrySet().stream()
+                    .allMatch(c -> before.members.contains(c.getKey()) == c.getValue())) {
+                return;
+            }
+
+            final Set<URI> updated = new HashSet<>(before.members);
+            changes.forEach((uri, present) -> {
+                if (present) {
+                    updated.add(uri);
+                } else {
+                    updated.remove(uri);
+                }
+            });
+
+            // The container has changed since members were read
+            if (membership.compareAndSet(before, new Membership(Collections.unmodifiableSet(updated), null))) {
+                return;
+            }
+        }
+    }
+
+    // Whether the given URI is a direct child of the container
+    private boolean isMember(final URI uri) {
+        if (uri == null || !uri.isAbsolute() || uri.getFragment() != null) {
+            return false;
+        }
+
+        final String container = containerId.toString().replaceFirst("/$", "") + "/";
+        final String path = uri.toString().replaceFirst("/$", "");
+
+        return path.startsWith(container) && path.length() > container.length() &&
+                path.indexOf('/', container.length()) == -1;
+    }
+
+    private String etag(final URI uri) {
+        try (CloseableHttpResponse response = client.execute(new HttpHead(uri))) {
+            final Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+            return response.getStatusLine().getStatusCode() == HttpStatus.SC_OK && etag != null ? etag.getValue()
+                    : null;
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     private InputStream initialContent() {
@@ -326,4 +713,183 @@ public class LdpContainerRegistry implements Registry {
                 .replaceAll("[:/?#\\[\\]@#%]", "-");
     }
 
+    /**
+     * Batch of writes in a Fedora transaction.
+     */
+    // Immutable set of container members, and the container's ETag when read, or null if it may have changed since
+    private static class Membership {
+
+        final Set<URI> members;
+
+        final String etag;
+
+        Membership(final Set<URI> members, final String etag) {
+            this.members = members;
+            this.etag = etag;
+        }
+    }
+
+    private class Transaction implements Batch {
+
+        // Base URI of the repository, and the same base URI within the transaction
+        private final String repositoryBase;
+
+        private final String transactionBase;
+
+        // Changes in container membership, applied once committed
+        private final Map<URI, Boolean> memberChanges = new LinkedHashMap<>();
+
+        // Resources written in the transaction, to be re-read once committed
+        private final Set<URI> changed = new HashSet<>();
+
+        private boolean done = false;
+
+        Transaction() {
+            final HttpPost begin = new HttpPost(containerId.toString().replaceFirst("/$", "") + "/" + FCR_TX);
+
+            try (CloseableHttpResponse response = execute(begin)) {
+                transactionBase = response.getFirstHeader(HttpHeaders.LOCATION).getValue().replaceFirst("/$", "");
+            } catch (final IOException e) {
+                throw new RuntimeException("Could not start transaction", e);
+            }
+
+            repositoryBase = transactionBase.replaceFirst("/tx:[^/]+$", "");
+            LOG.debug("Started transaction <{}>", transactionBase);
+        }
+
+        @Override
+        public URI put(final WebResource resource) {
+            return put(resource, binary);
+        }
+
+        @Override
+        public URI put(final WebResource resource, final boolean asBinary) {
+            checkOpen();
+            final URI uri = outOfTransaction(write(resource, asBinary, this::inTransaction));
+            changed.add(uri);
+
+            if (isMember(uri)) {
+                memberChanges.put(uri, true);
+            }
+
+            return uri;
+        }
+
+        @Override
+        public URI post(final URI container, final WebResource resource) {
+            checkOpen();
+            final URI uri = outOfTransaction(LdpContainerRegistry.this.post(container, resource,
+                    this::inTransaction));
+            changed.add(uri);
+            changed.add(container);
+
+            if (isMember(uri)) {
+                memberChanges.put(uri, true);
+            }
+
+            return uri;
+        }
+
+        @Override
+        public void patch(final URI uri, final String sparqlUpdate) {
+            checkOpen();
+            LdpContainerRegistry.this.patch(uri, sparqlUpdate, this::inTransaction);
+            changed.add(uri);
+        }
+
+        @Override
+        public void delete(final URI uri) {
+            checkOpen();
+            try (CloseableHttpResponse response = execute(new HttpDelete(inTransaction(uri)))) {
+                changed.add(uri);
+
+                if (isMember(uri)) {
+                    memberChanges.put(uri, false);
+                }
+            } catch (final IOException e) {
+                throw new RuntimeException(uri.toString(), e);
+            }
+        }
+
+        @Override
+        public void commit() {
+            checkOpen();
+
+            // If the commit fails, the transaction is still open, so roll it back
+            try (CloseableHttpResponse response = execute(new HttpPost(transactionBase + "/" + FCR_TX +
+                    "/fcr:commit"))) {
+                LOG.debug("Committed transaction <{}>", transactionBase);
+            } catch (final IOException | RuntimeException e) {
+                close();
+                throw new RuntimeException("Could not commit transaction " + transactionBase, e);
+            }
+            done = true;
+
+            changed.forEach(LdpContainerRegistry.this::written);
+            if (!memberChanges.isEmpty()) {
+                written(containerId);
+            }
+            updateMembers(memberChanges);
+        }
+
+        @Override
+        public void close() {
+            if (done) {
+                return;
+            }
+            done = true;
+
+            try (CloseableHttpResponse response = execute(new HttpPost(transactionBase + "/" + FCR_TX +
+                    "/fcr:rollback"))) {
+                LOG.info("Rolled back transaction <{}>", transactionBase);
+            } catch (final Exception e) {
+                LOG.warn("Could not roll back transaction <{}>", transactionBase, e);
+            }
+        }
+
+        private void checkOpen() {
+            if (done) {
+                throw new IllegalStateException("Transaction " + transactionBase + " is no longer open");
+            }
+        }
+
+        private URI inTransaction(final URI uri) {
+            final String value = uri.toString();
+
+            if (!within(value, transactionBase) && within(value, repositoryBase)) {
+                return URI.create(transactionBase + value.substring(repositoryBase.length()));
+            }
+            return uri;
+        }
+
+        private URI outOfTransaction(final URI uri) {
+            final String value = uri.toString();
+
+            if (within(value, transactionBase)) {
+                return URI.create(repositoryBase + value.substring(transactionBase.length()));
+            }
+            return uri;
+        }
+    }
+
+    private static boolean within(final String uri, final String base) {
+        return uri.equals(base) || uri.startsWith(base + "/");
+    }
+
+    // Execute a request, failing on any unsuccessful response
+    private CloseableHttpResponse execute(final HttpUriRequest request) throws IOException {
+        final CloseableHttpResponse response = client.execute(request);
+
+        final int status = response.getStatusLine().getStatusCode();
+        if (status < 200 || status >= 300) {
+            try {
+                throw new RuntimeException(String.format("%s failed on %s: %s; %s", request.getMethod(),
+                        request.getURI(), response.getStatusLine(), EntityUtils.toString(response.getEntity())));
+            } finally {
+                response.close();
+            }
+        }
+
+        return response;
+    }
 }
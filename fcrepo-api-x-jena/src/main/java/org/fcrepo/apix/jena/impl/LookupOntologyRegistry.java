@@ -26,17 +26,22 @@ import java.io.ByteArrayOutputStream;
 import java.net.URI;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BinaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.fcrepo.apix.model.WebResource;
+import org.fcrepo.apix.model.components.FreshReads;
 import org.fcrepo.apix.model.components.Initializer;
 import org.fcrepo.apix.model.components.Initializer.Initialization;
 import org.fcrepo.apix.model.components.OntologyRegistry;
 import org.fcrepo.apix.model.components.Registry;
+import org.fcrepo.apix.model.components.ResourceNotFoundException;
 import org.fcrepo.apix.model.components.Updateable;
 
 import org.apache.jena.rdf.model.Model;
@@ -54,7 +59,8 @@ import org.slf4j.LoggerFactory;
  * </p>
  * <p>
  * This indexes all ontologies upon initialization (if {@link #isIndexIRIs()} is {@code true}), and maintains the
- * index in response to {@link #put(WebResource)} or {@link #put(WebResource, URI)}.
+ * index in response to {@link #put(WebResource)} or {@link #put(WebResource, URI)}. A reverse index of location to
+ * ontology IRIs allows {@link #delete(URI)} and {@link #update(URI)} to adjust only the IRIs of a single location.
  * </p>
  * <p>
  * For ontology registries backed by an LDP container in the repository, this class may be used by an asynchronous
@@ -70,8 +76,13 @@ public class LookupOntologyRegistry implements OntologyRegistry, Updateable {
 
     static final String OWL_ONTOLOGY = "http://www.w3.org/2002/07/owl#Ontology";
 
+    static final String FCR_METADATA = "/fcr:metadata";
+
     private final Map<URI, URI> ontologyIRIsToLocation = new ConcurrentHashMap<>();
 
+    // Reverse of ontologyIRIsToLocation.  Both are only modified while holding this registry's monitor.
+    private final Map<URI, Set<URI>> locationToOntologyIRIs = new ConcurrentHashMap<>();
+
     private Registry registry;
 
     private boolean indexIRIs = true;
@@ -146,6 +157,19 @@ public class LookupOntologyRegistry implements OntologyRegistry, Updateable {
                 null, name(ontologyResource)), persistAsBinary);
     }
 
+    @Override
+    public URI post(final URI container, final WebResource ontologyResource) {
+        init.await();
+        return index(registry.post(container, ontologyResource));
+    }
+
+    @Override
+    public void patch(final URI uri, final String sparqlUpdate) {
+        init.await();
+        registry.patch(uri, sparqlUpdate);
+        index(uri);
+    }
+
     private String name(final WebResource resource) {
         if (resource.name() != null) {
             return resource.name();
@@ -168,11 +192,16 @@ public class LookupOntologyRegistry implements OntologyRegistry, Updateable {
         return registry.list();
     }
 
+    @Override
+    public Stream<URI> stream() {
+        return registry.stream();
+    }
+
     @Override
     public void delete(final URI uri) {
         init.await();
         registry.delete(uri);
-        update();
+        unindex(uri);
     }
 
     /**
@@ -226,21 +255,72 @@ public class LookupOntologyRegistry implements OntologyRegistry, Updateable {
     private URI index(final URI ontologyLocation) {
         LOG.debug("Indexing ontology at {}", ontologyLocation);
 
-        for (final URI ontologyIRI : ontologyURIs(load(ontologyLocation))) {
-            if (ontologyIRIsToLocation.containsKey(ontologyIRI) && !ontologyLocation.equals(
-                    ontologyIRIsToLocation.get(ontologyIRI))) {
+        index(ontologyLocation, ontologyURIs(load(ontologyLocation)));
+
+        return ontologyLocation;
+    }
+
+    /** Replace whatever IRIs were indexed for the given location with the given ones */
+    private void index(final URI ontologyLocation, final Set<URI> ontologyIRIs) {
+        index(ontologyLocation, ontologyIRIs, Collections.emptySet());
+    }
+
+    /**
+     * Replace whatever IRIs were indexed for the given location with the given ones.
+     * <p>
+     * IRIs in <code>moved</code> are taken from whatever location they are currently indexed for; it is an error for
+     * any other IRI to be indexed for a different location.
+     * </p>
+     */
+    private synchronized void index(final URI ontologyLocation, final Set<URI> ontologyIRIs, final Set<URI> moved) {
+
+        for (final URI ontologyIRI : ontologyIRIs) {
+            final URI existing = ontologyIRIsToLocation.get(ontologyIRI);
+            if (existing != null && !ontologyLocation.equals(existing) && !moved.contains(ontologyIRI)) {
                 throw new RuntimeException(String.format(
                         "There is already a resource for ontology %s at %s, " +
                                 "attempted to add a new one at %s",
                         ontologyIRI,
-                        ontologyIRIsToLocation.get(ontologyIRI), ontologyLocation));
+                        existing, ontologyLocation));
+            }
+        }
+
+        final Set<URI> previous = locationToOntologyIRIs.getOrDefault(ontologyLocation, Collections.emptySet());
+        for (final URI removed : previous) {
+            if (!ontologyIRIs.contains(removed)) {
+                LOG.info("Index: Removing ontology IRI {} which no longer resolves to location {}", removed,
+                        ontologyLocation);
+                ontologyIRIsToLocation.remove(removed, ontologyLocation);
             }
+        }
 
+        for (final URI ontologyIRI : ontologyIRIs) {
             LOG.info("Index: Indexing ontology IRI {} which resolves to location {}", ontologyIRI, ontologyLocation);
+            final URI existing = ontologyIRIsToLocation.put(ontologyIRI, ontologyLocation);
+
+            if (existing != null && !ontologyLocation.equals(existing)) {
+                LOG.info("Index: Ontology IRI {} moved from location {}", ontologyIRI, existing);
+                final Set<URI> remaining = new HashSet<>(locationToOntologyIRIs.getOrDefault(existing,
+                        Collections.emptySet()));
+                remaining.remove(ontologyIRI);
+                if (remaining.isEmpty()) {
+                    locationToOntologyIRIs.remove(existing);
+                } else {
+                    locationToOntologyIRIs.put(existing, remaining);
+                }
+            }
+        }
 
-            ontologyIRIsToLocation.put(ontologyIRI, ontologyLocation);
+        if (ontologyIRIs.isEmpty()) {
+            locationToOntologyIRIs.remove(ontologyLocation);
+        } else {
+            locationToOntologyIRIs.put(ontologyLocation, ontologyIRIs);
         }
-        return ontologyLocation;
+    }
+
+    /** Remove all IRIs indexed for the given location */
+    private void unindex(final URI ontologyLocation) {
+        index(ontologyLocation, Collections.emptySet());
     }
 
     Set<URI> ontologyURIs(final Model ontology) {
@@ -274,14 +354,22 @@ public class LookupOntologyRegistry implements OntologyRegistry, Updateable {
 
     @Override
     public void update() {
-        final Map<URI, URI> iriMap = registry.list().stream()
+        final Map<URI, URI> iriMap = registry.stream()
                 .flatMap(loc -> ontologyURIs(load(loc)).stream()
                         .map(uri -> new SimpleEntry<URI, URI>(uri, loc)))
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, CONFLICT));
 
-        ontologyIRIsToLocation.putAll(iriMap);
+        final Map<URI, Set<URI>> locationMap = iriMap.entrySet().stream()
+                .collect(Collectors.groupingBy(Map.Entry::getValue,
+                        Collectors.mapping(Map.Entry::getKey, Collectors.toSet())));
+
+        synchronized (this) {
+            ontologyIRIsToLocation.putAll(iriMap);
+            ontologyIRIsToLocation.keySet().removeIf(iri -> !iriMap.containsKey(iri));
 
-        ontologyIRIsToLocation.keySet().removeIf(iri -> !iriMap.containsKey(iri));
+            locationToOntologyIRIs.putAll(locationMap);
+            locationToOntologyIRIs.keySet().removeIf(loc -> !locationMap.containsKey(loc));
+        }
 
         ontologyIRIsToLocation.entrySet().forEach(e -> LOG.info(
                 "Update: Indexing ontology IRI {} which resolves to location {}", e.getKey(), e.getValue()));
@@ -292,10 +380,54 @@ public class LookupOntologyRegistry implements OntologyRegistry, Updateable {
                 String.format("Resources %s and %s both define the same ontology IRI", v1, v2));
     };
 
+    /**
+     * Re-index only the ontology at the given location.
+     * <p>
+     * If the resource no longer exists, any IRIs indexed for it are removed. Otherwise, the IRIs it declares replace
+     * those previously indexed for it. An IRI indexed for a different location is moved if that location no longer
+     * declares it, as when an ontology is moved and its new location is seen before its old one is seen to be gone.
+     * </p>
+     */
     @Override
     public void update(final URI inResponseTo) {
-        if (registry.hasInDomain(inResponseTo)) {
-            update();
+        if (!registry.hasInDomain(inResponseTo)) {
+            return;
+        }
+
+        final URI location = URI.create(inResponseTo.toString().replaceFirst(FCR_METADATA + "$", ""));
+
+        Set<URI> ontologyIRIs;
+        try {
+            ontologyIRIs = ontologyURIs(load(location));
+        } catch (final RuntimeException e) {
+            if (e.getCause() instanceof ResourceNotFoundException) {
+                LOG.debug("Ontology at {} is gone", location);
+                ontologyIRIs = Collections.emptySet();
+            } else {
+                throw e;
+            }
+        }
+
+        final Set<URI> moved = new HashSet<>();
+        for (final URI ontologyIRI : ontologyIRIs) {
+            final URI existing = ontologyIRIsToLocation.get(ontologyIRI);
+            if (existing != null && !existing.equals(location) && !declares(existing, ontologyIRI)) {
+                moved.add(ontologyIRI);
+            }
+        }
+
+        index(location, ontologyIRIs, moved);
+    }
+
+    /** Determine if the ontology currently at the given location declares the given IRI */
+    private boolean declares(final URI location, final URI ontologyIRI) {
+        try {
+            return ontologyURIs(FreshReads.of(() -> load(location))).contains(ontologyIRI);
+        } catch (final RuntimeException e) {
+            if (e.getCause() instanceof ResourceNotFoundException) {
+                return false;
+            }
+            throw e;
         }
     }
 }
@@ -122,7 +122,7 @@ public class PersistingOntologyRegistry extends WrappingRegistry implements Onto
 
     @Override
     public void update() {
-        extensionRegistry.list().forEach(this::update);
+        extensionRegistry.stream().forEach(this::update);
     }
 
     @Override
@@ -20,8 +20,10 @@ package org.fcrepo.apix.jena.impl;
 
 import java.net.URI;
 import java.util.Collection;
+import java.util.stream.Stream;
 
 import org.fcrepo.apix.model.WebResource;
+import org.fcrepo.apix.model.components.Batch;
 import org.fcrepo.apix.model.components.Registry;
 
 /**
@@ -52,11 +54,26 @@ abstract class WrappingRegistry implements Registry {
         return delegate.put(resource);
     }
 
+    @Override
+    public URI post(final URI container, final WebResource resource) {
+        return delegate.post(container, resource);
+    }
+
+    @Override
+    public void patch(final URI uri, final String sparqlUpdate) {
+        delegate.patch(uri, sparqlUpdate);
+    }
+
     @Override
     public void delete(final URI uri) {
         delegate.delete(uri);
     }
 
+    @Override
+    public Batch batch() {
+        return delegate.batch();
+    }
+
     @Override
     public boolean canWrite() {
         return delegate.canWrite();
@@ -67,6 +84,11 @@ abstract class WrappingRegistry implements Registry {
         return delegate.list();
     }
 
+    @Override
+    public Stream<URI> stream() {
+        return delegate.stream();
+    }
+
     @Override
     public boolean contains(final URI id) {
         return delegate.contains(id);
@@ -0,0 +1,172 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.jena;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.fcrepo.apix.model.WebResource;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.RDF;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares parse throughput of the RDF serializations a registry may be sent.
+ * <p>
+ * Documents are generated to resemble what API-X reads from Fedora: a registry container listing its members, and a
+ * repository resource with server-managed and descriptive triples as well as children. Each is serialized in every
+ * format, and parsed as {@link Util#parse(WebResource)} would parse a registry lookup.
+ * </p>
+ * <p>
+ * Run with <code>mvn -Pbenchmark test-compile exec:exec</code> in this module.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    static final String BASE = "http://localhost:8080/rest/";
+
+    static final String LDP = "http://www.w3.org/ns/ldp#";
+
+    static final String FEDORA = "http://fedora.info/definitions/v4/repository#";
+
+    static final String DC = "http://purl.org/dc/terms/";
+
+    @Param({ "application/n-triples", "text/turtle", "application/rdf+xml" })
+    public String format;
+
+    @Param({ "registry", "resource" })
+    public String document;
+
+    @Param({ "100", "5000" })
+    public int members;
+
+    private byte[] serialized;
+
+    private String uri;
+
+    /**
+     * Generate and serialize the document.
+     */
+    @Setup
+    public void setUp() {
+        final Model model = "registry".equals(document) ? registry() : resource();
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RDFDataMgr.write(out, model, Util.rdfLanguage(format));
+        serialized = out.toByteArray();
+    }
+
+    /**
+     * Parse the document.
+     *
+     * @return parsed model.
+     */
+    @Benchmark
+    public Model parse() {
+        return Util.parse(WebResource.of(new ByteArrayInputStream(serialized), format), uri);
+    }
+
+    // A registry container, e.g. of services or extensions
+    private Model registry() {
+        uri = BASE + "apix/services";
+
+        final Model model = ModelFactory.createDefaultModel();
+        final Resource container = model.createResource(uri);
+
+        fedoraContainer(model, container);
+
+        final Property contains = model.createProperty(LDP, "contains");
+        for (int i = 0; i < members; i++) {
+            container.addProperty(contains, model.createResource(uri + "/" + i));
+        }
+
+        return model;
+    }
+
+    // A repository resource with descriptive metadata and children
+    private Model resource() {
+        uri = BASE + "objects/ab/cd/ef/abcdef0123456789";
+
+        final Model model = ModelFactory.createDefaultModel();
+        final Resource resource = model.createResource(uri);
+
+        fedoraContainer(model, resource);
+        resource.addProperty(model.createProperty(DC, "title"), "A representative repository object");
+        resource.addProperty(model.createProperty(DC, "description"),
+                "An object described by a handful of literals, some of them \"quoted\", others multi-line\n" +
+                        "and with non-ASCII characters: éèüß");
+        resource.addProperty(model.createProperty(DC, "identifier"), "abcdef0123456789");
+
+        final Property contains = model.createProperty(LDP, "contains");
+        final Property hasPart = model.createProperty(DC, "hasPart");
+        for (int i = 0; i < members; i++) {
+            final Resource child = model.createResource(uri + "/files/" + i);
+            resource.addProperty(contains, child);
+            resource.addProperty(hasPart, child);
+            model.createResource(uri + "#part" + i)
+                    .addProperty(model.createProperty(DC, "title"), "Part " + i)
+                    .addLiteral(model.createProperty(DC, "extent"), model.createTypedLiteral(Integer.toString(
+                            i * 1024), XSDDatatype.XSDinteger));
+        }
+
+        return model;
+    }
+
+    // Types and server-managed triples Fedora includes in every container
+    private static void fedoraContainer(final Model model, final Resource container) {
+        container.addProperty(RDF.type, model.createResource(LDP + "RDFSource"))
+                .addProperty(RDF.type, model.createResource(LDP + "Container"))
+                .addProperty(RDF.type, model.createResource(LDP + "BasicContainer"))
+                .addProperty(RDF.type, model.createResource(FEDORA + "Container"))
+                .addProperty(RDF.type, model.createResource(FEDORA + "Resource"))
+                .addProperty(model.createProperty(FEDORA, "hasParent"), model.createResource(BASE))
+                .addProperty(model.createProperty(FEDORA, "created"), model.createTypedLiteral(
+                        "2017-06-01T12:00:00.000Z", XSDDatatype.XSDdateTime))
+                .addProperty(model.createProperty(FEDORA, "lastModified"), model.createTypedLiteral(
+                        "2017-06-02T12:00:00.000Z", XSDDatatype.XSDdateTime))
+                .addProperty(model.createProperty(FEDORA, "createdBy"), "bypassAdmin")
+                .addProperty(model.createProperty(FEDORA, "lastModifiedBy"), "bypassAdmin")
+                .addProperty(model.createProperty(FEDORA, "writable"), model.createTypedLiteral(true));
+    }
+}
@@ -27,16 +27,26 @@ import static org.fcrepo.apix.model.Ontologies.Apix.PROP_EXPOSES_SERVICE;
 import static org.fcrepo.apix.model.Ontologies.Apix.PROP_EXPOSES_SERVICE_AT;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
 
 import org.fcrepo.apix.model.Extension;
 import org.fcrepo.apix.model.Extension.Scope;
 import org.fcrepo.apix.model.Service;
 import org.fcrepo.apix.model.components.Registry;
+import org.fcrepo.apix.model.components.ResourceNotFoundException;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -220,4 +230,91 @@ public class JenaExtensionRegistryTest {
                         Arrays.asList(service1.uri(), service2.uri())));
     }
 
+    // Verify that an extension with invalid properties can still be loaded, failing only when they are asked for
+    @Test
+    public void invalidPropertiesTest() {
+        when(registryDelegate.get(EXTENSION_URI)).thenReturn(rdfResource(EXTENSION,
+                triple(EXTENSION, PROP_BINDS_TO, "test:/binding1") +
+                        triple(EXTENSION, PROP_BINDS_TO, "test:/binding2") +
+                        triple(EXTENSION, PROP_CONSUMES_SERVICE, SERVICE_1_URI)));
+
+        final Extension extension = toTest.getExtension(EXTENSION_URI);
+
+        assertEquals(1, extension.intercepted().consumed().size());
+
+        try {
+            extension.bindingClass();
+            fail("Should have thrown an exception for multiple binding classes");
+        } catch (final ResourceNotFoundException e) {
+            // expected
+        }
+
+        try {
+            extension.exposed().exposedAt();
+            fail("Should have thrown an exception for a missing exposedAt");
+        } catch (final RuntimeException e) {
+            // expected
+        }
+    }
+
+    // Verify that a property that could not be read throws a new exception each time it is accessed
+    @Test
+    public void invalidPropertyNewExceptionTest() {
+        when(registryDelegate.get(EXTENSION_URI)).thenReturn(rdfResource(EXTENSION,
+                triple(EXTENSION, PROP_BINDS_TO, "test:/binding1") +
+                        triple(EXTENSION, PROP_BINDS_TO, "test:/binding2")));
+
+        final Extension extension = toTest.getExtension(EXTENSION_URI);
+
+        final List<RuntimeException> thrown = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            try {
+                extension.bindingClass();
+                fail("Should have thrown an exception for multiple binding classes");
+            } catch (final ResourceNotFoundException e) {
+                thrown.add(e);
+            }
+        }
+
+        assertNotSame(thrown.get(0), thrown.get(1));
+        assertSame(thrown.get(0).getCause(), thrown.get(1).getCause());
+        assertEquals(thrown.get(0).getCause().getMessage(), thrown.get(1).getMessage());
+    }
+
+    // Verify that extensions are read once, and that an update re-reads only the affected extension
+    @Test
+    public void snapshotUpdateTest() {
+        final URI OTHER_URI = URI.create("http://example.org/other");
+        final URI NEW_URI = URI.create("http://example.org/new");
+
+        when(registryDelegate.stream()).thenAnswer(i -> Stream.of(EXTENSION_URI, OTHER_URI));
+        when(registryDelegate.hasInDomain(any(URI.class))).thenReturn(true);
+        when(registryDelegate.get(EXTENSION_URI)).thenReturn(rdfResource(EXTENSION,
+                triple(EXTENSION, PROP_BINDS_TO, "test:/before")));
+        when(registryDelegate.get(OTHER_URI)).thenReturn(rdfResource(OTHER_URI.toString(),
+                triple(OTHER_URI.toString(), PROP_BINDS_TO, "test:/other")));
+        when(registryDelegate.get(NEW_URI)).thenReturn(rdfResource(NEW_URI.toString(),
+                triple(NEW_URI.toString(), PROP_BINDS_TO, "test:/new")));
+
+        assertEquals(2, toTest.getExtensions().size());
+        assertEquals(2, toTest.getExtensions().size());
+        verify(registryDelegate, times(1)).stream();
+
+        // Modify a known extension
+        when(registryDelegate.get(EXTENSION_URI)).thenReturn(rdfResource(EXTENSION,
+                triple(EXTENSION, PROP_BINDS_TO, "test:/after")));
+        toTest.update(EXTENSION_URI);
+
+        assertEquals(URI.create("test:/after"), toTest.getExtension(EXTENSION_URI).bindingClass());
+        verify(registryDelegate, times(1)).get(OTHER_URI);
+
+        // Add a new one, and remove an existing one
+        when(registryDelegate.stream()).thenAnswer(i -> Stream.of(EXTENSION_URI, NEW_URI));
+        toTest.update(NEW_URI);
+
+        assertEquals(2, toTest.getExtensions().size());
+        assertTrue(toTest.getExtensions().stream().anyMatch(e -> e.uri().equals(NEW_URI)));
+        assertFalse(toTest.getExtensions().stream().anyMatch(e -> e.uri().equals(OTHER_URI)));
+        verify(registryDelegate, times(2)).get(EXTENSION_URI);
+    }
 }
@@ -20,14 +20,34 @@ package org.fcrepo.apix.jena.impl;
 
 import static org.fcrepo.apix.jena.Util.rdfResource;
 import static org.fcrepo.apix.jena.Util.triple;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.net.URI;
 import java.nio.charset.Charset;
-
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fcrepo.apix.jena.JenaResource;
 import org.fcrepo.apix.model.Ontology;
 import org.fcrepo.apix.model.WebResource;
 import org.fcrepo.apix.model.components.OntologyRegistry;
@@ -74,6 +94,8 @@ public class JenaOntologyServiceTest {
 
     static final String SUBCLASS_OF = "http://www.w3.org/2000/01/rdf-schema#subClassOf";
 
+    static final String RDFS_DOMAIN = "http://www.w3.org/2000/01/rdf-schema#domain";
+
     static final String OWL_IMPORTS = "http://www.w3.org/2002/07/owl#imports";
 
     static final String OWL_ONTOLOGY = "http://www.w3.org/2002/07/owl#Ontology";
@@ -237,4 +259,219 @@ public class JenaOntologyServiceTest {
         assertTrue(toTest.inferClasses(URI.create(individualURI), individual, ontology).contains(URI.create(
                 CLASS_A)));
     }
+
+    // Verify that triples relevant to the ontology are kept when parsing, and irrelevant ones don't get in the way
+    @Test
+    public void inferClassesFromDomainTest() {
+        final String property = "http://example.org/properties#p";
+        final String unrelated = "http://example.org/properties#unrelated";
+
+        final Ontology ontology = toTest.parseOntology(rdfResource(ONT1,
+                triple(ONT1, RDF_TYPE, OWL_ONTOLOGY) +
+                        triple(property, RDFS_DOMAIN, CLASS_A)));
+
+        final String individualURI = "test:/individual";
+
+        final WebResource individual = mock(WebResource.class);
+        when(individual.contentType()).thenReturn("application/n-triples");
+        when(individual.representation()).thenReturn(IOUtils.toInputStream(
+                triple(individualURI, unrelated, "test:/other") +
+                        triple(individualURI, property, "test:/value"),
+                Charset.defaultCharset()));
+
+        final Set<URI> inferred = toTest.inferClasses(URI.create(individualURI), individual, ontology);
+        assertTrue(inferred.contains(URI.create(CLASS_A)));
+    }
+
+    // Verify that reasoning over an instance does not add anything to the ontology, and the ontology can be reused
+    @Test
+    public void inferClassesLeavesOntologyUnmodifiedTest() {
+        final Ontology ontology = toTest.parseOntology(rdfResource(ONT4,
+                triple(ONT4, RDF_TYPE, OWL_ONTOLOGY) +
+                        triple(CLASS_B, SUBCLASS_OF, CLASS_A) +
+                        triple(CLASS_D, SUBCLASS_OF, CLASS_B)));
+        final long size = ((JenaResource) ontology).model().size();
+
+        for (final String type : Arrays.asList(CLASS_D, CLASS_B)) {
+            final WebResource individual = mock(WebResource.class);
+            when(individual.contentType()).thenReturn("application/n-triples");
+            when(individual.representation()).thenReturn(IOUtils.toInputStream(
+                    triple("test:/" + type.hashCode(), RDF_TYPE, type), Charset.defaultCharset()));
+
+            final Set<URI> inferred = toTest.inferClasses(URI.create("test:/" + type.hashCode()), individual,
+                    ontology);
+            assertTrue(inferred.contains(URI.create(CLASS_A)));
+        }
+
+        assertEquals(size, ((JenaResource) ontology).model().size());
+    }
+
+    // Verify that asserted classes are those of the individual only, and nothing is inferred
+    @Test
+    public void assertedClassesTest() {
+        final String individualURI = "test:/individual";
+
+        final WebResource individual = mock(WebResource.class);
+        when(individual.contentType()).thenReturn("application/n-triples");
+        when(individual.representation()).thenReturn(IOUtils.toInputStream(
+                triple(individualURI, RDF_TYPE, CLASS_B) +
+                        triple("test:/other", RDF_TYPE, CLASS_C),
+                Charset.defaultCharset()));
+
+        assertEquals(Collections.singleton(URI.create(CLASS_B)), toTest.assertedClasses(URI.create(individualURI),
+                individual));
+    }
+
+    // Verify that statements include those of imported ontologies, but none that are inferred
+    @Test
+    public void statementsOfTest() {
+        final Ontology ontology = toTest.getOntology(URI.create(ONT5));
+
+        final Set<Map.Entry<URI, URI>> statements = new HashSet<>(toTest.statementsOf(ontology, URI.create(
+                SUBCLASS_OF)));
+
+        assertEquals(3, statements.size());
+        assertTrue(statements.contains(new SimpleImmutableEntry<>(URI.create(CLASS_B), URI.create(CLASS_A))));
+        assertTrue(statements.contains(new SimpleImmutableEntry<>(URI.create(CLASS_D), URI.create(CLASS_B))));
+        assertTrue(statements.contains(new SimpleImmutableEntry<>(URI.create(CLASS_E), URI.create(CLASS_D))));
+    }
+
+    // Verify that closures are cached, and only those depending on an updated ontology are invalidated
+    @Test
+    public void closureCacheInvalidationTest() {
+        final OntologyRegistry registry = mock(OntologyRegistry.class);
+        final String LOCATION_1 = "http://example.org/registry/ont1";
+
+        when(registry.get(eq(URI.create(ONT1)))).thenReturn(rdfResource(LOCATION_1,
+                triple(ONT1, RDF_TYPE, OWL_ONTOLOGY) +
+                        triple(CLASS_B, SUBCLASS_OF, CLASS_A)));
+        when(registry.get(eq(URI.create(ONT2)))).thenReturn(rdfResource(ONT2,
+                triple(ONT2, RDF_TYPE, OWL_ONTOLOGY) +
+                        triple(CLASS_C, SUBCLASS_OF, CLASS_A)));
+        when(registry.get(eq(URI.create(ONT4)))).thenReturn(rdfResource(ONT4,
+                triple(ONT4, RDF_TYPE, OWL_ONTOLOGY) +
+                        triple(ONT4, OWL_IMPORTS, ONT1) +
+                        triple(CLASS_D, SUBCLASS_OF, CLASS_B)));
+        when(registry.hasInDomain(any(URI.class))).thenReturn(true);
+
+        toTest.setRegistryDelegate(registry);
+
+        final Ontology ont4 = toTest.getOntology(URI.create(ONT4));
+        final Ontology ont2 = toTest.getOntology(URI.create(ONT2));
+
+        assertSame(ont4, toTest.getOntology(URI.create(ONT4)));
+        assertSame(ont2, toTest.getOntology(URI.create(ONT2)));
+        verify(registry, times(1)).get(URI.create(ONT1));
+
+        // Update the location of ONT1, which ONT4 imports
+        toTest.update(URI.create(LOCATION_1 + "/fcr:metadata"));
+
+        assertNotSame(ont4, toTest.getOntology(URI.create(ONT4)));
+        assertSame(ont2, toTest.getOntology(URI.create(ONT2)));
+        verify(registry, times(2)).get(URI.create(ONT1));
+        verify(registry, times(1)).get(URI.create(ONT2));
+    }
+
+    // Verify that concurrent resolution of the same import retrieves it only once
+    @Test
+    public void concurrentImportsTest() throws Exception {
+        final OntologyRegistry registry = mock(OntologyRegistry.class);
+        final CountDownLatch bothRequested = new CountDownLatch(2);
+
+        when(registry.get(eq(URI.create(ONT1)))).thenAnswer(i -> {
+            bothRequested.await(1, TimeUnit.SECONDS);
+            return rdfResource(ONT1, triple(ONT1, RDF_TYPE, OWL_ONTOLOGY) + triple(CLASS_B, SUBCLASS_OF, CLASS_A));
+        });
+        when(registry.get(eq(URI.create(ONT4)))).thenAnswer(i -> {
+            bothRequested.countDown();
+            return rdfResource(ONT4, triple(ONT4, RDF_TYPE, OWL_ONTOLOGY) + triple(ONT4, OWL_IMPORTS, ONT1));
+        });
+        when(registry.get(eq(URI.create(ONT3)))).thenAnswer(i -> {
+            bothRequested.countDown();
+            return rdfResource(ONT3, triple(ONT3, RDF_TYPE, OWL_ONTOLOGY) + triple(ONT3, OWL_IMPORTS, ONT1));
+        });
+
+        toTest.setRegistryDelegate(registry);
+
+        final ExecutorService exe = Executors.newFixedThreadPool(2);
+        try {
+            final Future<Ontology> ont4 = exe.submit(() -> toTest.getOntology(URI.create(ONT4)));
+            final Future<Ontology> ont3 = exe.submit(() -> toTest.getOntology(URI.create(ONT3)));
+
+            ont4.get(5, TimeUnit.SECONDS);
+            ont3.get(5, TimeUnit.SECONDS);
+        } finally {
+            exe.shutdown();
+        }
+
+        verify(registry, times(1)).get(URI.create(ONT1));
+    }
+
+    // Verify that an import retrieved before an invalidation is not used for closures resolved after it
+    @Test
+    public void invalidationDuringImportTest() throws Exception {
+        final OntologyRegistry registry = mock(OntologyRegistry.class);
+        final CountDownLatch requested = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger ont1Requests = new AtomicInteger();
+
+        when(registry.get(eq(URI.create(ONT1)))).thenAnswer(i -> {
+            if (ont1Requests.incrementAndGet() == 1) {
+                requested.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return rdfResource(ONT1, triple(ONT1, RDF_TYPE, OWL_ONTOLOGY) + triple(CLASS_B, SUBCLASS_OF,
+                        CLASS_A));
+            }
+            return rdfResource(ONT1, triple(ONT1, RDF_TYPE, OWL_ONTOLOGY) + triple(CLASS_C, SUBCLASS_OF, CLASS_A));
+        });
+        when(registry.get(eq(URI.create(ONT4)))).thenAnswer(i -> rdfResource(ONT4,
+                triple(ONT4, RDF_TYPE, OWL_ONTOLOGY) + triple(ONT4, OWL_IMPORTS, ONT1)));
+        when(registry.hasInDomain(any(URI.class))).thenReturn(true);
+
+        toTest.setRegistryDelegate(registry);
+
+        final ExecutorService exe = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Ontology> before = exe.submit(() -> toTest.getOntology(URI.create(ONT4)));
+            assertTrue(requested.await(5, TimeUnit.SECONDS));
+
+            // ONT1 changes while the first retrieval is still reading it
+            toTest.update(URI.create(ONT1));
+
+            final Model after = ((JenaResource) toTest.getOntology(URI.create(ONT4))).model();
+            release.countDown();
+            before.get(5, TimeUnit.SECONDS);
+
+            final Model cached = ((JenaResource) toTest.getOntology(URI.create(ONT4))).model();
+
+            for (final Model model : Arrays.asList(after, cached)) {
+                assertTrue(model.contains(model.getResource(CLASS_C), model.getProperty(SUBCLASS_OF), model
+                        .getResource(CLASS_A)));
+                assertFalse(model.contains(model.getResource(CLASS_B), model.getProperty(SUBCLASS_OF), model
+                        .getResource(CLASS_A)));
+            }
+        } finally {
+            release.countDown();
+            exe.shutdown();
+        }
+
+        verify(registry, times(2)).get(URI.create(ONT1));
+    }
+
+    // Verify that imported ontologies are shared between closures and merged ontologies, rather than copied
+    @Test
+    public void sharedImportsTest() {
+        final JenaOntologyService.Ont ont3 = toTest.getOntology(URI.create(ONT3));
+        final JenaOntologyService.Ont ont4 = toTest.getOntology(URI.create(ONT4));
+
+        // ONT3 is made of itself, ONT1, and ONT2; ONT4 is itself and ONT1
+        assertEquals(3, ont3.components.size());
+        assertEquals(2, ont4.components.size());
+        assertTrue(ont3.components.stream().anyMatch(g -> ont4.components.stream().anyMatch(h -> g == h)));
+
+        final JenaOntologyService.Ont merged = toTest.merge(ont3, ont4);
+        assertEquals(4, merged.components.size());
+        assertTrue(merged.model.containsAll(ont3.model()));
+        assertTrue(merged.model.containsAll(ont4.model()));
+    }
 }
@@ -28,8 +28,14 @@ import static org.fcrepo.apix.model.Ontologies.Service.PROP_HAS_ENDPOINT;
 import static org.fcrepo.apix.model.Ontologies.Service.PROP_HAS_SERVICE_INSTANCE;
 import static org.fcrepo.apix.model.Ontologies.Service.PROP_HAS_SERVICE_INSTANCE_REGISTRY;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.net.URI;
@@ -37,10 +43,12 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.fcrepo.apix.model.Service;
 import org.fcrepo.apix.model.ServiceInstance;
 import org.fcrepo.apix.model.WebResource;
+import org.fcrepo.apix.model.components.Batch;
 import org.fcrepo.apix.model.components.Registry;
 import org.fcrepo.apix.model.components.ServiceInstanceRegistry;
 
@@ -108,7 +116,7 @@ public class JenaServiceRegistryTest {
         when(delegate.get(SERVICE_URI)).thenReturn(
                 rdfResource(SERVICE, triple(SERVICE, RDF_TYPE, CLASS_SERVICE) +
                         triple(SERVICE, PROP_CANONICAL, CANONICAL)));
-        when(delegate.list()).thenReturn(Arrays.asList(SERVICE_URI));
+        when(delegate.stream()).thenAnswer(i -> Stream.of(SERVICE_URI));
 
         toTest.update();
 
@@ -120,6 +128,52 @@ public class JenaServiceRegistryTest {
         }
     }
 
+    // Verifies that updating a single resource only re-reads that resource
+    @Test
+    public void incrementalUpdateTest() throws Exception {
+        final String SERVICE_1 = "http://repository.local/services/1";
+        final URI SERVICE_1_URI = URI.create(SERVICE_1);
+        final String SERVICE_2 = "http://repository.local/services/2";
+        final URI SERVICE_2_URI = URI.create(SERVICE_2);
+        final URI CANONICAL_1 = URI.create("http://example.org/canonical/1");
+        final URI CANONICAL_2 = URI.create("http://example.org/canonical/2");
+        final URI CANONICAL_3 = URI.create("http://example.org/canonical/3");
+        final String REGISTRY_CONTAINER = "http://example.org/container";
+        final URI REGISTRY_CONTAINER_URI = URI.create(REGISTRY_CONTAINER);
+        toTest.setRegistryContainer(REGISTRY_CONTAINER_URI);
+
+        when(delegate.get(REGISTRY_CONTAINER_URI)).thenReturn(rdfResource(REGISTRY_CONTAINER, ""));
+        when(delegate.get(SERVICE_1_URI)).thenReturn(
+                rdfResource(SERVICE_1, triple(SERVICE_1, RDF_TYPE, CLASS_SERVICE) +
+                        triple(SERVICE_1, PROP_CANONICAL, CANONICAL_1.toString())));
+        when(delegate.get(SERVICE_2_URI)).thenReturn(
+                rdfResource(SERVICE_2, triple(SERVICE_2, RDF_TYPE, CLASS_SERVICE) +
+                        triple(SERVICE_2, PROP_CANONICAL, CANONICAL_2.toString())));
+        when(delegate.stream()).thenAnswer(i -> Stream.of(SERVICE_1_URI, SERVICE_2_URI));
+        when(delegate.hasInDomain(SERVICE_1_URI)).thenReturn(true);
+
+        toTest.update();
+
+        assertTrue(toTest.contains(CANONICAL_1));
+        assertTrue(toTest.contains(SERVICE_1_URI));
+        assertEquals(2, toTest.list().size());
+
+        when(delegate.get(SERVICE_1_URI)).thenReturn(
+                rdfResource(SERVICE_1, triple(SERVICE_1, RDF_TYPE, CLASS_SERVICE) +
+                        triple(SERVICE_1, PROP_CANONICAL, CANONICAL_3.toString())));
+
+        toTest.update(SERVICE_1_URI);
+
+        assertFalse(toTest.contains(CANONICAL_1));
+        assertTrue(toTest.contains(CANONICAL_3));
+        assertTrue(toTest.contains(CANONICAL_2));
+        assertTrue(toTest.contains(SERVICE_1_URI));
+
+        verify(delegate, times(2)).get(SERVICE_1_URI);
+        verify(delegate, times(1)).get(SERVICE_2_URI);
+        verify(delegate, times(1)).get(REGISTRY_CONTAINER_URI);
+    }
+
     // Verifies that 'instancesOf' returns services instances for LdpServiceInstanceRegistries
     @SuppressWarnings("resource")
     @Test
@@ -154,4 +208,103 @@ public class JenaServiceRegistryTest {
         assertTrue(instanceURIs.containsAll(Arrays.asList(URI.create(SERVICE_ENDPOINT_1), URI.create(
                 SERVICE_ENDPOINT_2))));
     }
+
+    // Verifies that instances are looked up by service URI from the instance table, and refreshed on update
+    @Test
+    public void instanceTableTest() {
+        final String SERVICE_INSTANCE = "http://example.org/service#instance";
+        final String SERVICE_ENDPOINT_1 = "http://example.org/endpoints/1";
+        final String SERVICE_ENDPOINT_2 = "http://example.org/endpoints/2";
+        final String SERVICE = "http://example.org/service#uri";
+        final URI SERVICE_URI = URI.create(SERVICE);
+
+        final String service = triple(SERVICE, RDF_TYPE, CLASS_SERVICE) +
+                triple(SERVICE, RDF_TYPE, CLASS_LDP_SERVICE_INSTANCE_REGISTRY) +
+                triple(SERVICE, PROP_HAS_SERVICE_INSTANCE_REGISTRY, SERVICE) +
+                triple(SERVICE, PROP_HAS_SERVICE_INSTANCE, SERVICE_INSTANCE);
+
+        final WebResource initial = rdfResource(SERVICE, service +
+                triple(SERVICE_INSTANCE, PROP_HAS_ENDPOINT, SERVICE_ENDPOINT_1));
+
+        when(delegate.get(SERVICE_URI)).thenReturn(initial);
+        when(delegate.get(URI.create(SERVICE_INSTANCE))).thenReturn(initial);
+
+        assertEquals(Arrays.asList(URI.create(SERVICE_ENDPOINT_1)),
+                toTest.instancesOf(SERVICE_URI).instances().get(0).endpoints());
+        assertEquals(Arrays.asList(URI.create(SERVICE_ENDPOINT_1)),
+                toTest.instancesOf(SERVICE_URI).instances().get(0).endpoints());
+
+        // Second lookup came from the table
+        verify(delegate, times(1)).get(SERVICE_URI);
+
+        final WebResource updated = rdfResource(SERVICE, service +
+                triple(SERVICE_INSTANCE, PROP_HAS_ENDPOINT, SERVICE_ENDPOINT_2));
+
+        when(delegate.get(SERVICE_URI)).thenReturn(updated);
+        when(delegate.get(URI.create(SERVICE_INSTANCE))).thenReturn(updated);
+
+        toTest.update(URI.create("http://example.org/service"));
+
+        assertEquals(Arrays.asList(URI.create(SERVICE_ENDPOINT_2)),
+                toTest.instancesOf(SERVICE_URI).instances().get(0).endpoints());
+        verify(delegate, times(2)).get(SERVICE_URI);
+    }
+
+    // Verifies that instances read before an update seen during their lookup are not retained in the table
+    @Test
+    public void updateDuringMaterializeTest() {
+        final String SERVICE_INSTANCE = "http://example.org/service#instance";
+        final String SERVICE_ENDPOINT_1 = "http://example.org/endpoints/1";
+        final String SERVICE_ENDPOINT_2 = "http://example.org/endpoints/2";
+        final String SERVICE = "http://example.org/service#uri";
+        final URI SERVICE_URI = URI.create(SERVICE);
+
+        final String service = triple(SERVICE, RDF_TYPE, CLASS_SERVICE) +
+                triple(SERVICE, RDF_TYPE, CLASS_LDP_SERVICE_INSTANCE_REGISTRY) +
+                triple(SERVICE, PROP_HAS_SERVICE_INSTANCE_REGISTRY, SERVICE) +
+                triple(SERVICE, PROP_HAS_SERVICE_INSTANCE, SERVICE_INSTANCE);
+
+        final String[] endpoint = { SERVICE_ENDPOINT_1 };
+        when(delegate.get(SERVICE_URI)).thenAnswer(i -> rdfResource(SERVICE, service +
+                triple(SERVICE_INSTANCE, PROP_HAS_ENDPOINT, endpoint[0])));
+
+        // The service changes after it has been read, but before its instance has been read
+        when(delegate.get(URI.create(SERVICE_INSTANCE))).thenAnswer(i -> {
+            final WebResource current = rdfResource(SERVICE, service +
+                    triple(SERVICE_INSTANCE, PROP_HAS_ENDPOINT, endpoint[0]));
+            if (endpoint[0].equals(SERVICE_ENDPOINT_1)) {
+                endpoint[0] = SERVICE_ENDPOINT_2;
+                toTest.update(URI.create("http://example.org/service"));
+            }
+            return current;
+        });
+
+        assertEquals(Arrays.asList(URI.create(SERVICE_ENDPOINT_1)),
+                toTest.instancesOf(SERVICE_URI).instances().get(0).endpoints());
+
+        assertEquals(Arrays.asList(URI.create(SERVICE_ENDPOINT_2)),
+                toTest.instancesOf(SERVICE_URI).instances().get(0).endpoints());
+        verify(delegate, times(2)).get(SERVICE_URI);
+    }
+
+    // Verifies that instance registries can be created in registries that don't support transactions
+    @SuppressWarnings("resource")
+    @Test
+    public void createInstanceRegistryWithoutTransactionTest() {
+        final String SERVICE = "http://example.org/service#uri";
+        final URI SERVICE_URI = URI.create(SERVICE);
+        final URI INSTANCE_REGISTRY_URI = URI.create("http://example.org/service/instances");
+
+        when(delegate.get(SERVICE_URI)).thenReturn(rdfResource(SERVICE,
+                triple(SERVICE, RDF_TYPE, CLASS_SERVICE) +
+                        triple(SERVICE, RDF_TYPE, CLASS_LDP_SERVICE_INSTANCE_REGISTRY) +
+                        triple(SERVICE, PROP_HAS_SERVICE_INSTANCE_REGISTRY, SERVICE)));
+        when(delegate.batch()).thenAnswer(i -> Batch.of(delegate));
+        when(delegate.post(eq(SERVICE_URI), any(WebResource.class))).thenReturn(INSTANCE_REGISTRY_URI);
+
+        assertNotNull(toTest.createInstanceRegistry(toTest.getService(SERVICE_URI)));
+
+        verify(delegate).post(eq(SERVICE_URI), any(WebResource.class));
+        verify(delegate).patch(eq(INSTANCE_REGISTRY_URI), anyString());
+    }
 }
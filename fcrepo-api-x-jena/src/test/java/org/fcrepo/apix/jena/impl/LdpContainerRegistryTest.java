@@ -22,7 +22,10 @@ import static org.fcrepo.apix.model.Ontologies.LDP_CONTAINS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -31,9 +34,11 @@ import static org.mockito.Mockito.when;
 import java.net.URI;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 import org.fcrepo.apix.model.WebResource;
+import org.fcrepo.apix.model.components.Batch;
 import org.fcrepo.apix.model.components.Registry;
 import org.fcrepo.apix.test.SynchronousInitializer;
 
@@ -44,10 +49,15 @@ import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.junit.Before;
 import org.junit.Test;
@@ -192,12 +202,13 @@ public class LdpContainerRegistryTest {
         final URI containerURI = URI.create("test:Container");
         toTest.setContainer(containerURI);
         toTest.setRegistryDelegate(registryDelegate);
+        toTest.setHttpClient(client);
 
         final String rdf = String.format("<%s> <%s> <%s> .\n<%s> <%s> <%s> .", containerURI.toString(), LDP_CONTAINS,
                 member1.toString(), containerURI.toString(), LDP_CONTAINS, member2.toString());
 
-        when(registryDelegate.get(containerURI)).thenReturn(WebResource.of(IOUtils.toInputStream(rdf, "UTF-8"),
-                "application/n-triples"));
+        final CloseableHttpResponse page = page(rdf);
+        when(client.execute(isA(HttpGet.class))).thenReturn(page);
 
         final Collection<URI> members = toTest.list();
         final Collection<URI> expectedMembers = Arrays.asList(member1, member2);
@@ -206,6 +217,217 @@ public class LdpContainerRegistryTest {
         assertTrue(expectedMembers.containsAll(members));
     }
 
+    // Verifies that membership is kept locally, and only re-read when the container's ETag changes
+    @SuppressWarnings("unchecked")
+    @Test
+    public void membershipTest() throws Exception {
+        final URI member1 = URI.create("http://example.org/container/member1");
+        final URI member2 = URI.create("http://example.org/container/member2");
+        final URI containerURI = URI.create("http://example.org/container");
+        toTest.setContainer(containerURI);
+        toTest.setRegistryDelegate(registryDelegate);
+        toTest.setHttpClient(client);
+        toTest.setCreateContainer(false);
+
+        final String rdf = String.format("<%s> <%s> <%s> .", containerURI, LDP_CONTAINS, member1);
+
+        final CloseableHttpResponse page1 = page(rdf);
+        final CloseableHttpResponse page2 = page(rdf);
+        final CloseableHttpResponse page3 = page(rdf);
+        when(client.execute(isA(HttpGet.class))).thenReturn(page1, page2, page3);
+        when(headStatus.getStatusCode()).thenReturn(HttpStatus.SC_OK);
+        when(headResponse.getFirstHeader(HttpHeaders.ETAG)).thenReturn(header);
+        when(header.getValue()).thenReturn("W/\"1\"");
+
+        toTest.init();
+
+        assertTrue(toTest.contains(member1));
+        assertFalse(toTest.contains(member2));
+
+        // Own writes are reflected without reading the container
+        when(client.execute(isA(HttpPost.class), any(ResponseHandler.class))).thenReturn(member2);
+        toTest.put(WebResource.of(IOUtils.toInputStream("", "UTF-8"), "text/turtle"));
+        assertTrue(toTest.contains(member2));
+
+        when(entityStatus.getStatusCode()).thenReturn(HttpStatus.SC_NO_CONTENT);
+        when(client.execute(isA(HttpDelete.class))).thenReturn(entityResponse);
+        toTest.delete(member2);
+        assertFalse(toTest.contains(member2));
+
+        verify(client, times(1)).execute(isA(HttpGet.class));
+
+        // First revalidation reads the container, since it was modified since last read.
+        toTest.update(member2);
+        verify(client, times(2)).execute(isA(HttpGet.class));
+
+        // Unchanged ETag
+        toTest.update(member2);
+        verify(client, times(2)).execute(isA(HttpGet.class));
+
+        // Not in the container
+        toTest.update(URI.create("http://example.org/elsewhere"));
+        verify(client, times(2)).execute(isA(HttpHead.class));
+
+        // Changed ETag
+        when(header.getValue()).thenReturn("W/\"2\"");
+        toTest.update(containerURI);
+        verify(client, times(3)).execute(isA(HttpGet.class));
+    }
+
+    // Verifies that a write made while the container is being read is not lost once the read completes
+    @SuppressWarnings("unchecked")
+    @Test
+    public void writeDuringReadTest() throws Exception {
+        final URI member1 = URI.create("http://example.org/container/member1");
+        final URI member2 = URI.create("http://example.org/container/member2");
+        final URI containerURI = URI.create("http://example.org/container");
+        toTest.setContainer(containerURI);
+        toTest.setRegistryDelegate(registryDelegate);
+        toTest.setHttpClient(client);
+        toTest.setCreateContainer(false);
+
+        // Both reads list only member1; member2 is written while the second is in progress
+        final String rdf = String.format("<%s> <%s> <%s> .", containerURI, LDP_CONTAINS, member1);
+        final CloseableHttpResponse page1 = page(rdf);
+        final CloseableHttpResponse page2 = page(rdf);
+        when(client.execute(isA(HttpPost.class), any(ResponseHandler.class))).thenReturn(member2);
+        when(client.execute(isA(HttpGet.class))).thenReturn(page1).thenAnswer(i -> {
+            toTest.put(WebResource.of(IOUtils.toInputStream("", "UTF-8"), "text/turtle"));
+            return page2;
+        });
+        when(headStatus.getStatusCode()).thenReturn(HttpStatus.SC_OK);
+        when(headResponse.getFirstHeader(HttpHeaders.ETAG)).thenReturn(header);
+        when(header.getValue()).thenReturn("W/\"1\"");
+
+        toTest.init();
+        assertFalse(toTest.contains(member2));
+
+        when(header.getValue()).thenReturn("W/\"2\"");
+        toTest.update(containerURI);
+
+        verify(client, times(2)).execute(isA(HttpGet.class));
+        assertTrue(toTest.contains(member1));
+        assertTrue(toTest.contains(member2));
+    }
+
+    // Verifies that members of a paged container are streamed a page at a time
+    @Test
+    public void pagedMembersTest() throws Exception {
+        final URI member1 = URI.create("http://example.org/container/member1");
+        final URI member2 = URI.create("http://example.org/container/member2");
+        final URI containerURI = URI.create("http://example.org/container");
+        toTest.setContainer(containerURI);
+        toTest.setHttpClient(client);
+        toTest.setPageSize(1);
+
+        final CloseableHttpResponse first = page(String.format("<%s> <%s> <%s> .", containerURI, LDP_CONTAINS,
+                member1));
+        final Header next = mock(Header.class);
+        when(next.getValue()).thenReturn("<http://example.org/container?page=2>; rel=\"next\"");
+        when(first.getHeaders("Link")).thenReturn(new Header[] { next });
+
+        final CloseableHttpResponse second = page(String.format("<%s> <%s> <%s> .", containerURI, LDP_CONTAINS,
+                member2));
+
+        when(client.execute(isA(HttpGet.class))).thenReturn(first, second);
+
+        final Iterator<URI> members = toTest.stream().iterator();
+
+        assertEquals(member1, members.next());
+        verify(client, times(1)).execute(requestCaptor.capture());
+        assertEquals(containerURI, requestCaptor.getValue().getURI());
+        assertEquals("return=representation; max-member-count=\"1\"", requestCaptor.getValue().getFirstHeader(
+                "Prefer").getValue());
+
+        assertEquals(member2, members.next());
+        verify(client, times(2)).execute(requestCaptor.capture());
+        assertEquals(URI.create("http://example.org/container?page=2"), requestCaptor.getValue().getURI());
+
+        assertFalse(members.hasNext());
+    }
+
+    // Verifies that writes in a batch are made in a transaction, with URIs mapped in and out of it
+    @Test
+    public void batchTest() throws Exception {
+        final URI containerURI = URI.create("http://example.org/rest/container");
+        toTest.setContainer(containerURI);
+        toTest.setHttpClient(client);
+
+        final Header txLocation = mock(Header.class);
+        when(txLocation.getValue()).thenReturn("http://example.org/rest/tx:123");
+        final Header childLocation = mock(Header.class);
+        when(childLocation.getValue()).thenReturn("http://example.org/rest/tx:123/container/child");
+
+        when(entityStatus.getStatusCode()).thenReturn(HttpStatus.SC_CREATED);
+        when(entityResponse.getFirstHeader(HttpHeaders.LOCATION)).thenReturn(txLocation, childLocation);
+
+        try (Batch batch = toTest.batch()) {
+            final URI child = batch.post(containerURI, WebResource.of(IOUtils.toInputStream("", "UTF-8"),
+                    "text/turtle"));
+            assertEquals(URI.create("http://example.org/rest/container/child"), child);
+
+            batch.patch(child, "INSERT {<> a <test:Thing> .} WHERE {}");
+            batch.commit();
+        }
+
+        verify(client, times(4)).execute(requestCaptor.capture());
+        final List<HttpUriRequest> requests = requestCaptor.getAllValues();
+
+        assertEquals(URI.create("http://example.org/rest/container/fcr:tx"), requests.get(0).getURI());
+        assertEquals("POST", requests.get(1).getMethod());
+        assertEquals(URI.create("http://example.org/rest/tx:123/container"), requests.get(1).getURI());
+        assertEquals("PATCH", requests.get(2).getMethod());
+        assertEquals(URI.create("http://example.org/rest/tx:123/container/child"), requests.get(2).getURI());
+        assertEquals(URI.create("http://example.org/rest/tx:123/fcr:tx/fcr:commit"), requests.get(3).getURI());
+    }
+
+    // Verifies that an uncommitted batch is rolled back
+    @Test
+    public void batchRollbackTest() throws Exception {
+        final URI containerURI = URI.create("http://example.org/rest/container");
+        toTest.setContainer(containerURI);
+        toTest.setHttpClient(client);
+
+        when(header.getValue()).thenReturn("http://example.org/rest/tx:123");
+        when(entityStatus.getStatusCode()).thenReturn(HttpStatus.SC_CREATED);
+        when(entityResponse.getFirstHeader(HttpHeaders.LOCATION)).thenReturn(header);
+
+        try (Batch batch = toTest.batch()) {
+            // Nothing to do
+        }
+
+        verify(client, times(2)).execute(requestCaptor.capture());
+        assertEquals(URI.create("http://example.org/rest/tx:123/fcr:tx/fcr:rollback"), requestCaptor.getValue()
+                .getURI());
+    }
+
+    // Verifies that a batch whose commit fails is rolled back
+    @Test
+    public void batchCommitFailureTest() throws Exception {
+        final URI containerURI = URI.create("http://example.org/rest/container");
+        toTest.setContainer(containerURI);
+        toTest.setHttpClient(client);
+
+        when(header.getValue()).thenReturn("http://example.org/rest/tx:123");
+        when(entityStatus.getStatusCode()).thenReturn(HttpStatus.SC_CREATED, HttpStatus.SC_CONFLICT,
+                HttpStatus.SC_NO_CONTENT);
+        when(entityResponse.getFirstHeader(HttpHeaders.LOCATION)).thenReturn(header);
+        when(entityResponse.getEntity()).thenReturn(new StringEntity("Conflict"));
+
+        try (Batch batch = toTest.batch()) {
+            batch.commit();
+            fail("Commit should have failed");
+        } catch (final RuntimeException e) {
+            // expected
+        }
+
+        verify(client, times(3)).execute(requestCaptor.capture());
+        final List<HttpUriRequest> requests = requestCaptor.getAllValues();
+
+        assertEquals(URI.create("http://example.org/rest/tx:123/fcr:tx/fcr:commit"), requests.get(1).getURI());
+        assertEquals(URI.create("http://example.org/rest/tx:123/fcr:tx/fcr:rollback"), requests.get(2).getURI());
+    }
+
     @Test
     public void domainTest() {
         final String CONTAINER = "http://example.org/container";
@@ -215,4 +437,17 @@ public class LdpContainerRegistryTest {
         assertTrue(toTest.hasInDomain(URI.create(CONTAINER + "/other/path")));
         assertFalse(toTest.hasInDomain(URI.create("http://bad.example.org/not")));
     }
+
+    private static CloseableHttpResponse page(final String ntriples) {
+        final CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+        final StatusLine status = mock(StatusLine.class);
+
+        when(status.getStatusCode()).thenReturn(HttpStatus.SC_OK);
+        when(response.getStatusLine()).thenReturn(status);
+        when(response.getEntity()).thenReturn(new StringEntity(ntriples, ContentType.create("application/n-triples",
+                "UTF-8")));
+        when(response.getHeaders("Link")).thenReturn(new Header[0]);
+
+        return response;
+    }
 }
@@ -19,7 +19,12 @@
 package org.fcrepo.apix.jena.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
@@ -27,10 +32,11 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.stream.Stream;
 
 import org.fcrepo.apix.model.WebResource;
 import org.fcrepo.apix.model.components.Registry;
+import org.fcrepo.apix.model.components.ResourceNotFoundException;
 import org.fcrepo.apix.test.SynchronousInitializer;
 
 import org.apache.commons.io.IOUtils;
@@ -73,7 +79,7 @@ public class LookupOntologyRegistryTest {
 
             when(delegate.put(ontologyToPersist)).thenReturn(ontologyLocationURI);
             when(delegate.get(ontologyLocationURI)).thenReturn(ontologyToPersist);
-            when(delegate.list()).thenReturn(new ArrayList<>());
+            when(delegate.stream()).thenAnswer(i -> Stream.empty());
 
             toTest.setRegistryDelegate(delegate);
             toTest.init();
@@ -109,7 +115,7 @@ public class LookupOntologyRegistryTest {
                     return ontologyLocationURI;
                 }
             });
-            when(delegate.list()).thenReturn(entries);
+            when(delegate.stream()).thenAnswer(i -> entries.stream());
 
             toTest.setRegistryDelegate(delegate);
             toTest.init();
@@ -132,7 +138,7 @@ public class LookupOntologyRegistryTest {
 
             when(delegate.put(any(WebResource.class))).thenReturn(ontologyLocationURI);
             when(delegate.get(ontologyLocationURI)).thenReturn(ontologyToPersist);
-            when(delegate.list()).thenReturn(Arrays.asList(ontologyLocationURI));
+            when(delegate.stream()).thenAnswer(i -> Stream.of(ontologyLocationURI));
 
             toTest.setRegistryDelegate(delegate);
             toTest.init();
@@ -152,6 +158,86 @@ public class LookupOntologyRegistryTest {
         verifyZeroInteractions(delegate);
     }
 
+    // Verify that an update to one location re-reads only that location, and replaces only its IRIs
+    @Test
+    public void incrementalUpdateTest() throws Exception {
+
+        final URI location1 = URI.create("http://example.org/location1");
+        final URI location2 = URI.create("http://example.org/location2");
+        final URI oldIRI = URI.create("http://example.org/test#Old");
+        final URI newIRI = URI.create("http://example.org/test#New");
+        final URI otherIRI = URI.create("http://example.org/test#Other");
+
+        when(delegate.stream()).thenAnswer(i -> Stream.of(location1, location2));
+        when(delegate.get(location1)).thenReturn(ontology(location1, oldIRI));
+        when(delegate.get(location2)).thenReturn(ontology(location2, otherIRI));
+        when(delegate.hasInDomain(any(URI.class))).thenReturn(true);
+
+        toTest.setRegistryDelegate(delegate);
+        toTest.init();
+
+        assertTrue(toTest.contains(oldIRI));
+        assertTrue(toTest.contains(otherIRI));
+
+        when(delegate.get(location1)).thenReturn(ontology(location1, newIRI));
+        toTest.update(URI.create(location1 + "/fcr:metadata"));
+
+        assertFalse(toTest.contains(oldIRI));
+        assertTrue(toTest.contains(newIRI));
+        assertTrue(toTest.contains(otherIRI));
+        verify(delegate, times(1)).get(location2);
+        verify(delegate, times(1)).stream();
+
+        toTest.delete(location1);
+
+        assertFalse(toTest.contains(newIRI));
+        assertTrue(toTest.contains(otherIRI));
+        verify(delegate, times(1)).stream();
+    }
+
+    // Verify that a moved ontology stays indexed if its new location is seen before its old one is seen to be gone
+    @Test
+    public void outOfOrderMoveTest() throws Exception {
+
+        final URI location1 = URI.create("http://example.org/location1");
+        final URI location2 = URI.create("http://example.org/location2");
+        final URI location3 = URI.create("http://example.org/location3");
+        final URI iri = URI.create("http://example.org/test#Moved");
+
+        when(delegate.stream()).thenAnswer(i -> Stream.of(location1));
+        when(delegate.get(location1)).thenReturn(ontology(location1, iri));
+        when(delegate.hasInDomain(any(URI.class))).thenReturn(true);
+
+        toTest.setRegistryDelegate(delegate);
+        toTest.init();
+
+        // A copy at another location, while the original remains, is a real duplicate
+        when(delegate.get(location3)).thenReturn(ontology(location3, iri));
+        try {
+            toTest.update(location3);
+            fail("Should have refused to index a duplicate ontology IRI");
+        } catch (final RuntimeException e) {
+            // expected
+        }
+        assertEquals(location1, toTest.get(iri).uri());
+
+        // Now move it, and see the new location first
+        when(delegate.get(location1)).thenThrow(new ResourceNotFoundException("Gone"));
+        when(delegate.get(location2)).thenReturn(ontology(location2, iri));
+
+        toTest.update(location2);
+        assertEquals(location2, toTest.get(iri).uri());
+
+        toTest.update(location1);
+        assertTrue(toTest.contains(iri));
+        assertEquals(location2, toTest.get(iri).uri());
+    }
+
+    private WebResource ontology(final URI location, final URI ontologyIRI) {
+        return new ReadableResource(new ByteArrayInputStream(String.format("<%s> a <%s> .", ontologyIRI,
+                LookupOntologyRegistry.OWL_ONTOLOGY).getBytes()), "text/turtle", location, null);
+    }
+
     private class ReadableResource implements WebResource {
 
         private final byte[] content;
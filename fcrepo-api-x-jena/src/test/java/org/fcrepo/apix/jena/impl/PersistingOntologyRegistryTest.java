@@ -27,7 +27,7 @@ import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import java.net.URI;
-import java.util.Arrays;
+import java.util.stream.Stream;
 
 import org.fcrepo.apix.model.WebResource;
 import org.fcrepo.apix.model.components.ExtensionRegistry;
@@ -140,7 +140,7 @@ public class PersistingOntologyRegistryTest {
 
     @Test
     public void updateTest() {
-        when(extensionRegistry.list()).thenReturn(Arrays.asList(extensionURI, extensionURI));
+        when(extensionRegistry.stream()).thenAnswer(i -> Stream.of(extensionURI, extensionURI));
 
         toTest.update();
 
@@ -150,7 +150,7 @@ public class PersistingOntologyRegistryTest {
     @Test
     public void updateNoPersistTest() {
         toTest.setDoPersist(false);
-        when(extensionRegistry.list()).thenReturn(Arrays.asList(extensionURI, extensionURI));
+        when(extensionRegistry.stream()).thenAnswer(i -> Stream.of(extensionURI, extensionURI));
 
         toTest.update();
 
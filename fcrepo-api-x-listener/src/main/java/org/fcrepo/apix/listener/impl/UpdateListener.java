@@ -25,6 +25,7 @@ import static org.fcrepo.camel.FcrepoHeaders.FCREPO_URI;
 import java.net.URI;
 import java.util.List;
 
+import org.fcrepo.apix.model.components.FreshReads;
 import org.fcrepo.apix.model.components.RoutingFactory;
 import org.fcrepo.apix.model.components.Updateable;
 import org.fcrepo.camel.FcrepoHeaders;
@@ -37,6 +38,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Listens for updates to repository resources and notifies {@link Updateable}s
+ * <p>
+ * Updateables are notified in no particular order, so any lookups they make in response are {@link FreshReads}, and
+ * never answered from a cache that has yet to be notified.
+ * </p>
  *
  * @author apb@jhu.edu
  */
@@ -79,13 +84,13 @@ public class UpdateListener extends RouteBuilder {
                 .filter(header(FCREPO_RESOURCE_TYPE).contains(TYPE_REPOSITORY_RESOURCE))
 
                 .process(USE_FCREPO_URIS)
-                .process(e -> toUpdate.forEach(u -> {
+                .process(e -> FreshReads.run(() -> toUpdate.forEach(u -> {
                     try {
                         u.update(URI.create(e.getIn().getHeader(FCREPO_URI, String.class)));
                     } catch (final Exception x) {
                         LOG.warn(String.format("Update to <%s> failed", e.getIn().getHeader(FCREPO_URI)), x);
                     }
-                }));
+                })));
     }
 
     private final Processor USE_FCREPO_URIS = ex -> {
@@ -43,6 +43,7 @@ import java.util.stream.Collectors;
 import org.fcrepo.apix.model.Extension;
 import org.fcrepo.apix.model.Service;
 import org.fcrepo.apix.model.WebResource;
+import org.fcrepo.apix.model.components.Batch;
 import org.fcrepo.apix.model.components.ExtensionRegistry;
 import org.fcrepo.apix.model.components.Registry;
 import org.fcrepo.apix.model.components.ResourceNotFoundException;
@@ -103,6 +104,12 @@ public class LoaderService {
      * multiple entries in the extension registry. As extension registration is a relatively rare and asynchronous-ish
      * event, it's acceptable to do this.
      * </p>
+     * <p>
+     * Only the creation of services that are missing from the service registry is grouped into a single
+     * {@link Batch}. The extension or service resource, the service instance registry, and the instance endpoint are
+     * each written separately, since each step reads back what the previous one wrote, and writes in an uncommitted
+     * batch can't be read that way.
+     * </p>
      *
      * @param resource resource to load
      * @return URI pointing to service instance resource.
@@ -202,14 +209,24 @@ public class LoaderService {
                 .filter(u -> !definedWithExplicitCanonical.contains(u))
                 .collect(Collectors.toSet()));
 
-        // Finally, add any canonical services that aren't in our registry.
+        // Finally, add any canonical services that aren't in our registry, all together.
+        final Set<URI> missingServices = new HashSet<>();
         for (final URI canonical : canonicalServices) {
             if (serviceRegistry.contains(canonical)) {
                 LOG.debug("Service registry contains <{}>, NOT adding", canonical);
                 resolvableservices.add(canonical);
             } else {
                 LOG.info("Service registry does not contain <{}>, adding!", canonical);
-                resolvableservices.add(putService(canonical));
+                missingServices.add(canonical);
+            }
+        }
+
+        if (!missingServices.isEmpty()) {
+            try (Batch batch = serviceRegistry.batch()) {
+                for (final URI canonical : missingServices) {
+                    resolvableservices.add(putService(batch, canonical));
+                }
+                batch.commit();
             }
         }
 
@@ -230,13 +247,13 @@ public class LoaderService {
         return instances.addEndpoint(instanceURI);
     }
 
-    private URI putService(final URI serviceURI) {
+    private URI putService(final Batch batch, final URI serviceURI) {
 
         try (InputStream template = getClass().getResourceAsStream("/objects/service.ttl")) {
             final String rdf = IOUtils.toString(template, "utf8")
                     .replace("CANONICAL_SERVICE_URI", serviceURI.toString());
 
-            return serviceRegistry.put(WebResource.of(new ByteArrayInputStream(rdf.getBytes()), "text/turtle", null,
+            return batch.put(WebResource.of(new ByteArrayInputStream(rdf.getBytes()), "text/turtle", null,
                     toName(serviceURI)));
         } catch (final Exception e) {
             throw new RuntimeException(e);
@@ -45,6 +45,7 @@ import org.fcrepo.apix.model.Extension;
 import org.fcrepo.apix.model.Extension.ServiceExposureSpec;
 import org.fcrepo.apix.model.Service;
 import org.fcrepo.apix.model.WebResource;
+import org.fcrepo.apix.model.components.Batch;
 import org.fcrepo.apix.model.components.ExtensionRegistry;
 import org.fcrepo.apix.model.components.Registry;
 import org.fcrepo.apix.model.components.ResourceNotFoundException;
@@ -105,6 +106,7 @@ public class LoaderServiceTest {
 
         when(extensionRegistry.put(any(WebResource.class), any(Boolean.class))).thenReturn(PERSISTED_EXTENSION_URI);
 
+        when(serviceRegistry.batch()).thenAnswer(i -> Batch.of(serviceRegistry));
         when(serviceRegistry.getService(eq(PERSISTED_SERVICE_URI))).thenReturn(service);
         when(serviceRegistry.createInstanceRegistry(eq(service))).thenReturn(serviceInstanceRegistry);
         when(serviceInstanceRegistry.addEndpoint(SERVICE_ENDPOINT_URI)).thenReturn(PERSISTED_SERVICE_INSTANCE_URI);
@@ -71,6 +71,8 @@ public interface Ontologies {
 
         String PROP_CANONICAL = NS + "canonical";
 
+        String PROP_WEIGHT = NS + "weight";
+
         String PROP_IS_SERVICE_INSTANCE_REGISTRY_FOR = NS + "isServiceInstanceRegistryFor";
 
         String PROP_HAS_SERVICE_INSTANCE_REGISTRY = NS + "hasServiceInstanceRegistry";
@@ -41,4 +41,13 @@ public interface ServiceInstance {
      * @return The service.
      */
     public Service instanceOf();
+
+    /**
+     * Relative share of requests this instance should receive, compared to other instances of the same service.
+     *
+     * @return non-negative weight, 1 by default.
+     */
+    public default int weight() {
+        return 1;
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.model.components;
+
+import java.net.URI;
+
+import org.fcrepo.apix.model.WebResource;
+
+/**
+ * A group of writes to a registry, made together.
+ * <p>
+ * Writes made through a batch take effect when the batch is committed. Registries that support transactions make
+ * them all in a single transaction, so that either all of them or none of them take effect. Closing a batch that has
+ * not been committed discards it.
+ * </p>
+ * <p>
+ * URIs given to and returned by a batch are always those of resources as they will be once the batch is committed.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public interface Batch extends AutoCloseable {
+
+    /**
+     * Persist a resource, as per {@link Registry#put(WebResource)}.
+     *
+     * @param resource serialized resource.
+     * @return URI of the resource, as persisted in the registry.
+     */
+    public URI put(WebResource resource);
+
+    /**
+     * Persist a resource, as per {@link Registry#put(WebResource, boolean)}.
+     *
+     * @param resource serialized resource.
+     * @param asBinary true if binary.
+     * @return URI of the resource, as persisted in the registry.
+     */
+    public URI put(WebResource resource, boolean asBinary);
+
+    /**
+     * Create a new resource in the given container, as per {@link Registry#post(URI, WebResource)}.
+     *
+     * @param container URI of a container.
+     * @param resource serialized resource.
+     * @return URI of the created resource.
+     */
+    public URI post(URI container, WebResource resource);
+
+    /**
+     * Update a resource with a SPARQL update, as per {@link Registry#patch(URI, String)}.
+     *
+     * @param uri URI of the resource to update.
+     * @param sparqlUpdate SPARQL update, where <code>&lt;&gt;</code> refers to the resource.
+     */
+    public void patch(URI uri, String sparqlUpdate);
+
+    /**
+     * Delete a resource.
+     *
+     * @param uri URI of the resource.
+     */
+    public void delete(URI uri);
+
+    /**
+     * Make all writes in this batch take effect.
+     */
+    public void commit();
+
+    /**
+     * Discard any writes that have not been committed.
+     */
+    @Override
+    public void close();
+
+    /**
+     * A batch that simply performs each write on the given registry as it is made.
+     * <p>
+     * Writes are neither grouped nor atomic.
+     * </p>
+     *
+     * @param registry the registry.
+     * @return batch writing to the registry.
+     */
+    public static Batch of(final Registry registry) {
+        return new Batch() {
+
+            @Override
+            public URI put(final WebResource resource) {
+                return registry.put(resource);
+            }
+
+            @Override
+            public URI put(final WebResource resource, final boolean asBinary) {
+                return registry.put(resource, asBinary);
+            }
+
+            @Override
+            public URI post(final URI container, final WebResource resource) {
+                return registry.post(container, resource);
+            }
+
+            @Override
+            public void patch(final URI uri, final String sparqlUpdate) {
+                registry.patch(uri, sparqlUpdate);
+            }
+
+            @Override
+            public void delete(final URI uri) {
+                registry.delete(uri);
+            }
+
+            @Override
+            public void commit() {
+                // Nothing to do; writes have already been made.
+            }
+
+            @Override
+            public void close() {
+                // Nothing to discard
+            }
+        };
+    }
+}
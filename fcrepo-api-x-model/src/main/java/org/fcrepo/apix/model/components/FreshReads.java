@@ -0,0 +1,83 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.model.components;
+
+import java.util.function.Supplier;
+
+/**
+ * Marks registry lookups that must reflect the current state of a resource.
+ * <p>
+ * Lookups made by the current thread within {@link #run(Runnable)} or {@link #of(Supplier)} must not be answered from
+ * a cache, or joined to lookups started outside of such a scope. This is used when re-reading a resource that is
+ * known to have changed, e.g. after writing it, or in response to an update event.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public final class FreshReads {
+
+    private static final ThreadLocal<int[]> DEPTH = new ThreadLocal<>();
+
+    private FreshReads() {
+    }
+
+    /**
+     * Perform lookups that must reflect the current state of resources.
+     *
+     * @param task performs lookups.
+     */
+    public static void run(final Runnable task) {
+        of(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Perform lookups that must reflect the current state of resources.
+     *
+     * @param <T> result type
+     * @param task performs lookups.
+     * @return result of the task.
+     */
+    public static <T> T of(final Supplier<T> task) {
+        int[] depth = DEPTH.get();
+        if (depth == null) {
+            depth = new int[1];
+            DEPTH.set(depth);
+        }
+        depth[0]++;
+        try {
+            return task.get();
+        } finally {
+            if (--depth[0] == 0) {
+                DEPTH.remove();
+            }
+        }
+    }
+
+    /**
+     * Determine if lookups by the current thread must reflect the current state of resources.
+     *
+     * @return true if within {@link #run(Runnable)} or {@link #of(Supplier)}.
+     */
+    public static boolean required() {
+        return DEPTH.get() != null;
+    }
+}
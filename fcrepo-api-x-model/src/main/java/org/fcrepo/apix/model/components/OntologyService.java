@@ -19,6 +19,8 @@
 package org.fcrepo.apix.model.components;
 
 import java.net.URI;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.fcrepo.apix.model.Ontology;
@@ -80,4 +82,30 @@ public interface OntologyService {
      */
     public Set<URI> inferClasses(URI individual, WebResource resource, Ontology ontology);
 
+    /**
+     * Find the asserted classes of a given individual.
+     * <p>
+     * No reasoning is performed; these are only the {@code rdf:type}s of the individual present in the resource.
+     * </p>
+     *
+     * @param individual URI of the individual, as may be found in the provided resource.
+     * @param resource Resource containing serialized RDF.
+     * @return A set of all asserted classes, or empty if none.
+     */
+    public Set<URI> assertedClasses(URI individual, WebResource resource);
+
+    /**
+     * List the asserted statements of an ontology with a given property.
+     * <p>
+     * Statements of the ontology and its imports closure are included, but no inferred statements. Each statement is
+     * an entry of subject to object. Subjects or objects that are not named resources (e.g. blank nodes or literals)
+     * are null.
+     * </p>
+     *
+     * @param ontology Ontology containing the statements.
+     * @param property URI of the property.
+     * @return All matching statements, or empty if none.
+     */
+    public List<Map.Entry<URI, URI>> statementsOf(Ontology ontology, URI property);
+
 }
@@ -20,6 +20,7 @@ package org.fcrepo.apix.model.components;
 
 import java.net.URI;
 import java.util.Collection;
+import java.util.stream.Stream;
 
 import org.fcrepo.apix.model.WebResource;
 
@@ -59,6 +60,31 @@ public interface Registry {
      */
     public URI put(WebResource resource, boolean asBinary);
 
+    /**
+     * Create a new resource in the given container.
+     * <p>
+     * Like {@link #put(WebResource)}, this is only supported by registries that {@link #canWrite() can be written
+     * to}.
+     * </p>
+     *
+     * @param container URI of a container.
+     * @param resource serialized resource.
+     * @return URI of the created resource.
+     */
+    public URI post(URI container, WebResource resource);
+
+    /**
+     * Update a resource with a SPARQL update.
+     * <p>
+     * Like {@link #put(WebResource)}, this is only supported by registries that {@link #canWrite() can be written
+     * to}.
+     * </p>
+     *
+     * @param uri URI of the resource to update.
+     * @param sparqlUpdate SPARQL update, where <code>&lt;&gt;</code> refers to the resource.
+     */
+    public void patch(URI uri, String sparqlUpdate);
+
     /**
      * Delete a resource from the registry.
      *
@@ -66,6 +92,19 @@ public interface Registry {
      */
     public void delete(URI uri);
 
+    /**
+     * Start a batch of writes to this registry.
+     * <p>
+     * Implementations that support it make all writes in the batch in a single transaction. By default, each write is
+     * simply made as it happens.
+     * </p>
+     *
+     * @return a new batch, which must be closed.
+     */
+    public default Batch batch() {
+        return Batch.of(this);
+    }
+
     /**
      * Determines if resources can be written to this registry.
      *
@@ -80,6 +119,19 @@ public interface Registry {
      */
     public Collection<URI> list();
 
+    /**
+     * Lazily stream all resources in the registry.
+     * <p>
+     * Implementations backed by large remote listings may retrieve them incrementally as the stream is consumed,
+     * rather than holding the entire listing in memory. By default, this streams the result of {@link #list()}.
+     * </p>
+     *
+     * @return possibly unordered stream of all resource URIs in the registry.
+     */
+    public default Stream<URI> stream() {
+        return list().stream();
+    }
+
     /**
      * Determine if the registry contains the given resource.
      *
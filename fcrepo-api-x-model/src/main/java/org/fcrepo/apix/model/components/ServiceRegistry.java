@@ -35,6 +35,21 @@ public interface ServiceRegistry extends Registry {
      */
     ServiceInstanceRegistry instancesOf(Service service);
 
+    /**
+     * Get a registry of all instances of the service with the given URI.
+     * <p>
+     * Implementations may answer this from retained state, without retrieving the service itself. By default, this
+     * is equivalent to {@code instancesOf(getService(service))}.
+     * </p>
+     *
+     * @param service URI of the service, or its canonical URI.
+     * @return registry of service instances.
+     * @throws ResourceNotFoundException if the service is not in the registry.
+     */
+    default ServiceInstanceRegistry instancesOf(final URI service) {
+        return instancesOf(getService(service));
+    }
+
     /**
      * Create a new service instance registry.
      *
@@ -0,0 +1,91 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.model.components;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key.
+ * <p>
+ * The first thread to ask for a given key performs the load. Any other thread that asks for the same key while that
+ * load is in flight waits for it, and receives the same result (or the same exception). Nothing is retained once the
+ * load completes, so this is not a cache: a thread arriving afterwards performs a load of its own. Results are shared
+ * between threads, so must be safe to share.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ * @param <K> key type
+ * @param <V> result type
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Load the value for a key, or wait for a load of the same key already in flight.
+     *
+     * @param key the key.
+     * @param load performs the load, if none is in flight.
+     * @return the loaded value.
+     */
+    public V get(final K key, final Supplier<V> load) {
+        final CompletableFuture<V> flight = new CompletableFuture<>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            return join(existing);
+        }
+
+        try {
+            final V value = load.get();
+            flight.complete(value);
+            return value;
+        } catch (final RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Number of loads currently in flight.
+     *
+     * @return number of loads.
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private static <V> V join(final CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
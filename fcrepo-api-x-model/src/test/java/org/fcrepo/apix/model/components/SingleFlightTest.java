@@ -0,0 +1,152 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.model.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class SingleFlightTest {
+
+    static final int THREADS = 8;
+
+    final SingleFlight<String, Object> toTest = new SingleFlight<>();
+
+    final ExecutorService exe = Executors.newFixedThreadPool(THREADS);
+
+    final AtomicInteger loads = new AtomicInteger();
+
+    final CountDownLatch ready = new CountDownLatch(THREADS);
+
+    final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        exe.shutdownNow();
+    }
+
+    // Concurrent loads of the same key share one load, and one result
+    @Test
+    public void coalesceTest() throws Exception {
+        final Object result = new Object();
+
+        final List<Future<Object>> futures = submit(() -> {
+            loads.incrementAndGet();
+            release.await();
+            return result;
+        });
+
+        awaitWaiting();
+        release.countDown();
+
+        for (final Future<Object> f : futures) {
+            assertSame(result, f.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(0, toTest.inFlight());
+    }
+
+    // Exceptions are shared too, and don't stick around
+    @Test
+    public void exceptionTest() throws Exception {
+        final RuntimeException error = new IllegalStateException();
+
+        final List<Future<Object>> futures = submit(() -> {
+            loads.incrementAndGet();
+            release.await();
+            throw error;
+        });
+
+        awaitWaiting();
+        release.countDown();
+
+        for (final Future<Object> f : futures) {
+            try {
+                f.get(10, TimeUnit.SECONDS);
+                fail("Should have thrown an exception");
+            } catch (final Exception e) {
+                assertSame(error, e.getCause());
+            }
+        }
+        assertEquals(1, loads.get());
+
+        assertEquals("ok", toTest.get("key", () -> "ok"));
+    }
+
+    // Completed loads are not retained
+    @Test
+    public void sequentialTest() {
+        toTest.get("key", loads::incrementAndGet);
+        toTest.get("key", loads::incrementAndGet);
+        toTest.get("other", loads::incrementAndGet);
+
+        assertEquals(3, loads.get());
+    }
+
+    private interface Load {
+
+        Object load() throws Exception;
+    }
+
+    private List<Future<Object>> submit(final Load load) {
+        final List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(exe.submit(() -> {
+                ready.countDown();
+                return toTest.get("key", () -> {
+                    try {
+                        return load.load();
+                    } catch (final RuntimeException e) {
+                        throw e;
+                    } catch (final Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+            }));
+        }
+        return futures;
+    }
+
+    // Wait until every thread is about to ask for the key, and the first load has started
+    private void awaitWaiting() throws InterruptedException {
+        ready.await(10, TimeUnit.SECONDS);
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (loads.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, toTest.inFlight());
+        // Give the other threads a chance to reach the in-flight load
+        Thread.sleep(100);
+    }
+}
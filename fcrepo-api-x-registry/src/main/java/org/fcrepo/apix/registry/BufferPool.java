@@ -0,0 +1,126 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.registry;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of fixed-size byte buffers.
+ * <p>
+ * Buffers may be on the heap, or direct (off-heap). Released buffers are kept for re-use, up to a maximum number;
+ * beyond that, they are left to the garbage collector. A buffer that is never released is simply never re-used.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class BufferPool {
+
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+
+    public static final int DEFAULT_MAX_POOLED = 1024;
+
+    private volatile int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private volatile int maxPooled = DEFAULT_MAX_POOLED;
+
+    private volatile boolean direct = false;
+
+    private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * Set the size of each buffer.
+     *
+     * @param bytes number of bytes.
+     */
+    public void setChunkSize(final int bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + bytes);
+        }
+        this.chunkSize = bytes;
+    }
+
+    /**
+     * Set the maximum number of released buffers kept for re-use.
+     *
+     * @param buffers number of buffers.
+     */
+    public void setMaxPooled(final int buffers) {
+        this.maxPooled = buffers;
+    }
+
+    /**
+     * Allocate buffers outside of the heap.
+     *
+     * @param direct true for direct buffers, false for heap buffers.
+     */
+    public void setDirect(final boolean direct) {
+        this.direct = direct;
+    }
+
+    /**
+     * Get an empty buffer.
+     *
+     * @return a pooled buffer if there is one, otherwise a new one.
+     */
+    public ByteBuffer acquire() {
+        final ByteBuffer buffer = free.poll();
+
+        if (buffer != null) {
+            pooled.decrementAndGet();
+            buffer.clear();
+            return buffer;
+        }
+
+        return direct ? ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize);
+    }
+
+    /**
+     * Return a buffer to the pool.
+     * <p>
+     * The buffer must not be used after it has been released.
+     * </p>
+     *
+     * @param buffer a buffer from {@link #acquire()}.
+     */
+    public void release(final ByteBuffer buffer) {
+        if (buffer.capacity() != chunkSize || buffer.isDirect() != direct) {
+            return;
+        }
+
+        if (pooled.incrementAndGet() <= maxPooled) {
+            free.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * Number of released buffers available for re-use.
+     *
+     * @return number of buffers.
+     */
+    public int available() {
+        return pooled.get();
+    }
+}
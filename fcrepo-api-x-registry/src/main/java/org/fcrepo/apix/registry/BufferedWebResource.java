@@ -0,0 +1,298 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.registry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.fcrepo.apix.model.WebResource;
+
+/**
+ * Web resource whose representation has been read in full into pooled buffers.
+ * <p>
+ * Each call to {@link #representation()} returns an independent stream over the same buffers, so the representation
+ * can be read any number of times, sequentially or concurrently, without copying it. Several instances may share the
+ * same buffers (see {@link #share()}); the buffers are returned to their pool once every instance sharing them has
+ * been closed. Streams must not be read after the instance they came from has been closed.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class BufferedWebResource implements WebResource {
+
+    private final Body body;
+
+    private final String contentType;
+
+    private final URI uri;
+
+    private final String name;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private BufferedWebResource(final Body body, final String contentType, final URI uri, final String name) {
+        this.body = body;
+        this.contentType = contentType;
+        this.uri = uri;
+        this.name = name;
+    }
+
+    /**
+     * Read a representation in full.
+     * <p>
+     * The given stream is read to the end, but not closed.
+     * </p>
+     *
+     * @param stream representation bytes.
+     * @param contentType MIME type of the representation.
+     * @param uri URI of the resource, may be null.
+     * @param name name of the resource, may be null.
+     * @param pool pool to take buffers from.
+     * @return resource holding the representation.
+     * @throws IOException if the stream could not be read.
+     */
+    public static BufferedWebResource read(final InputStream stream, final String contentType, final URI uri,
+            final String name, final BufferPool pool) throws IOException {
+
+        final List<ByteBuffer> chunks = new ArrayList<>();
+        final ReadableByteChannel channel = Channels.newChannel(stream);
+
+        ByteBuffer chunk = pool.acquire();
+        try {
+            while (read(stream, channel, chunk) != -1) {
+                if (!chunk.hasRemaining()) {
+                    chunk.flip();
+                    chunks.add(chunk);
+                    chunk = pool.acquire();
+                }
+            }
+
+            if (chunk.position() > 0) {
+                chunk.flip();
+                chunks.add(chunk);
+            } else {
+                pool.release(chunk);
+            }
+        } catch (final IOException | RuntimeException e) {
+            pool.release(chunk);
+            chunks.forEach(pool::release);
+            throw e;
+        }
+
+        return new BufferedWebResource(new Body(chunks, pool), contentType, uri, name);
+    }
+
+    // Heap buffers are read into directly, others through the channel's transfer buffer
+    private static int read(final InputStream stream, final ReadableByteChannel channel, final ByteBuffer chunk)
+            throws IOException {
+        if (chunk.hasArray()) {
+            final int read = stream.read(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            if (read > 0) {
+                chunk.position(chunk.position() + read);
+            }
+            return read;
+        }
+        return channel.read(chunk);
+    }
+
+    /**
+     * Get another instance sharing this instance's buffers.
+     * <p>
+     * The new instance must be closed independently of this one.
+     * </p>
+     *
+     * @return new instance, or null if the buffers have already been released.
+     */
+    public BufferedWebResource share() {
+        return body.retain() ? new BufferedWebResource(body, contentType, uri, name) : null;
+    }
+
+    /**
+     * Length of the representation.
+     *
+     * @return number of bytes.
+     */
+    public long length() {
+        return body.length;
+    }
+
+    /**
+     * Read-only views of the buffers holding the representation, in order.
+     *
+     * @return buffers, each positioned at its start.
+     */
+    public List<ByteBuffer> buffers() {
+        body.checkOpen();
+        return Collections.unmodifiableList(body.chunks.stream()
+                .map(ByteBuffer::asReadOnlyBuffer)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public String contentType() {
+        return contentType;
+    }
+
+    @Override
+    public URI uri() {
+        return uri;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public InputStream representation() {
+        body.checkOpen();
+        return new View(body);
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            body.release();
+        }
+    }
+
+    // Buffers shared by one or more instances, and the number of instances not yet closed
+    private static class Body {
+
+        final List<ByteBuffer> chunks;
+
+        final BufferPool pool;
+
+        final long length;
+
+        final AtomicInteger references = new AtomicInteger(1);
+
+        Body(final List<ByteBuffer> chunks, final BufferPool pool) {
+            this.chunks = chunks;
+            this.pool = pool;
+            this.length = chunks.stream().mapToLong(ByteBuffer::remaining).sum();
+        }
+
+        boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                chunks.forEach(pool::release);
+            }
+        }
+
+        boolean isReleased() {
+            return references.get() == 0;
+        }
+
+        void checkOpen() {
+            if (isReleased()) {
+                throw new IllegalStateException("Representation has been released");
+            }
+        }
+    }
+
+    // Stream over duplicates of the shared buffers, so that each has its own position
+    private static class View extends InputStream {
+
+        final Body body;
+
+        int index = 0;
+
+        ByteBuffer current;
+
+        View(final Body body) {
+            this.body = body;
+        }
+
+        // Current buffer with bytes remaining, or null at the end
+        private ByteBuffer current() throws IOException {
+            if (body.isReleased()) {
+                throw new IOException("Representation has been released");
+            }
+
+            while (current == null || !current.hasRemaining()) {
+                if (index >= body.chunks.size()) {
+                    return null;
+                }
+                current = body.chunks.get(index++).duplicate();
+            }
+            return current;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final ByteBuffer buffer = current();
+            return buffer != null ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            final ByteBuffer buffer = current();
+            if (buffer == null) {
+                return -1;
+            }
+
+            final int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            long skipped = 0;
+            ByteBuffer buffer;
+            while (skipped < n && (buffer = current()) != null) {
+                final int count = (int) Math.min(n - skipped, buffer.remaining());
+                buffer.position(buffer.position() + count);
+                skipped += count;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            final ByteBuffer buffer = current();
+            return buffer != null ? buffer.remaining() : 0;
+        }
+    }
+}
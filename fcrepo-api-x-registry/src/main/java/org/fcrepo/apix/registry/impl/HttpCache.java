@@ -0,0 +1,496 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.registry.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.cache.CacheResponseStatus;
+import org.apache.http.client.cache.HttpCacheContext;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheStorage;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.client.cache.HttpCacheUpdateException;
+import org.apache.http.client.cache.InputLimit;
+import org.apache.http.client.cache.Resource;
+import org.apache.http.client.cache.ResourceFactory;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.cache.CacheConfig;
+import org.apache.http.impl.client.cache.CachingHttpClientBuilder;
+import org.apache.http.impl.client.cache.FileResource;
+import org.apache.http.impl.client.cache.FileResourceFactory;
+import org.apache.http.impl.client.cache.HeapResourceFactory;
+import org.apache.http.impl.client.cache.ManagedHttpCacheStorage;
+import org.apache.http.impl.execchain.ClientExecChain;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HTTP response cache for registry lookups.
+ * <p>
+ * Sits in front of an http client, and follows HTTP caching semantics: responses are cached as per their
+ * <code>Cache-Control</code> and <code>Expires</code> headers, and stale responses are revalidated with the server
+ * using their <code>ETag</code> or <code>Last-Modified</code> headers. Responses that say nothing about their
+ * freshness are given a configurable max age; by default, they are revalidated on every request.
+ * </p>
+ * <p>
+ * Small response bodies are held in memory. If a directory is configured, bodies larger than a threshold are kept
+ * on disk instead. Since the server does not know what API-X has cached, resources should be invalidated via
+ * {@link #invalidate(URI)} as they are changed; they will be re-read the next time they are requested.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class HttpCache implements HttpCacheMXBean {
+
+    static final String OBJECT_NAME = "org.fcrepo.apix:type=HttpCache,name=%s";
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpCache.class);
+
+    // Past this many outstanding invalidations, it's cheaper to drop everything
+    private static final int MAX_INVALIDATED = 10000;
+
+    private CloseableHttpClient client;
+
+    private CloseableHttpClient cachingClient;
+
+    private ClearableStorage storage;
+
+    private boolean enabled = false;
+
+    private String name = "default";
+
+    private int maxEntries = 1000;
+
+    private long maxObjectSize = 8 * 1024 * 1024;
+
+    private int memoryThreshold = 64 * 1024;
+
+    private String directory = "";
+
+    private long maxAge = 0;
+
+    // Resources that have changed since they were cached
+    private final Set<URI> invalidated = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder revalidations = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    private ObjectName registeredAs;
+
+    /**
+     * Set the underlying http client, used for all requests that can't be answered from the cache.
+     *
+     * @param client the client.
+     */
+    public void setHttpClient(final CloseableHttpClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Enable or disable caching.
+     *
+     * @param enabled If false, all requests go straight to the underlying client.
+     */
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Set the name of this cache, for the purpose of identifying its metrics.
+     *
+     * @param name the name.
+     */
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Set the maximum number of cached responses.
+     *
+     * @param entries number of responses.
+     */
+    public void setMaxEntries(final int entries) {
+        this.maxEntries = entries;
+    }
+
+    /**
+     * Set the size of the largest response body that will be cached.
+     *
+     * @param bytes number of bytes.
+     */
+    public void setMaxObjectSize(final long bytes) {
+        this.maxObjectSize = bytes;
+    }
+
+    /**
+     * Set the size of the largest response body kept in memory, if a directory is configured.
+     *
+     * @param bytes number of bytes.
+     */
+    public void setMemoryThreshold(final int bytes) {
+        this.memoryThreshold = bytes;
+    }
+
+    /**
+     * Set the directory for response bodies too large to be kept in memory.
+     *
+     * @param directory Path to directory; if empty, all response bodies are kept in memory.
+     */
+    public void setDirectory(final String directory) {
+        this.directory = directory != null ? directory.trim() : "";
+    }
+
+    /**
+     * Set how long responses may be served from the cache if the server does not say.
+     *
+     * @param seconds number of seconds; if 0, such responses are revalidated every time.
+     */
+    public void setMaxAge(final long seconds) {
+        this.maxAge = seconds;
+    }
+
+    /**
+     * Build the caching client and register metrics.
+     */
+    public void init() {
+        if (!enabled) {
+            LOG.info("HTTP cache {} is disabled", name);
+            return;
+        }
+
+        final CacheConfig config = CacheConfig.custom()
+                .setMaxCacheEntries(maxEntries)
+                .setMaxObjectSize(maxObjectSize)
+                .setSharedCache(false)
+                .setHeuristicCachingEnabled(false)
+                .build();
+
+        final ResourceFactory resources;
+        if (directory.isEmpty()) {
+            resources = new HeapResourceFactory();
+        } else {
+            final File dir = new File(directory);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new RuntimeException("Could not create cache directory " + dir);
+            }
+            resources = new TieredResourceFactory(memoryThreshold, new FileResourceFactory(dir));
+        }
+
+        storage = new ClearableStorage(config);
+
+        cachingClient = new BackendCachingClientBuilder(client, maxAge)
+                .setCacheConfig(config)
+                .setResourceFactory(resources)
+                .setHttpCacheStorage(storage)
+                .disableContentCompression()
+                .disableRedirectHandling()
+                .disableAutomaticRetries()
+                .disableCookieManagement()
+                .build();
+
+        LOG.info("HTTP cache {} enabled, with up to {} entries{}", name, maxEntries,
+                directory.isEmpty() ? "" : ", large entries in " + directory);
+
+        try {
+            registeredAs = new ObjectName(String.format(OBJECT_NAME, ObjectName.quote(name)));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, registeredAs);
+        } catch (final Exception e) {
+            LOG.warn("Could not register HTTP cache metrics for {}", name, e);
+            registeredAs = null;
+        }
+    }
+
+    /**
+     * Discard all cached responses, and unregister metrics.
+     */
+    public void shutdown() {
+        if (cachingClient != null) {
+            try {
+                cachingClient.close();
+            } catch (final IOException e) {
+                LOG.debug("Could not close caching client", e);
+            }
+            storage.shutdown();
+        }
+
+        if (registeredAs != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+            } catch (final Exception e) {
+                LOG.debug("Could not unregister {}", registeredAs, e);
+            }
+        }
+    }
+
+    /**
+     * Execute a request, answering from the cache if possible.
+     *
+     * @param request the request.
+     * @return the response.
+     * @throws IOException if the request could not be executed.
+     */
+    public CloseableHttpResponse execute(final HttpUriRequest request) throws IOException {
+        if (cachingClient == null) {
+            return client.execute(request);
+        }
+
+        if (invalidated.remove(withoutFragment(request.getURI()))) {
+            LOG.debug("Re-reading invalidated resource <{}>", request.getURI());
+            request.addHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        }
+
+        final HttpCacheContext context = HttpCacheContext.create();
+
+        final CloseableHttpResponse response = cachingClient.execute(request, context);
+        record(context.getCacheResponseStatus());
+        storage.cleanResources();
+
+        return response;
+    }
+
+    /**
+     * Invalidate any cached response for the given resource.
+     *
+     * @param uri URI of a resource that has changed.
+     */
+    public void invalidate(final URI uri) {
+        if (cachingClient == null) {
+            return;
+        }
+
+        invalidations.increment();
+
+        if (invalidated.size() >= MAX_INVALIDATED) {
+            invalidateAll();
+        } else {
+            invalidated.add(withoutFragment(uri));
+        }
+    }
+
+    /**
+     * Discard all cached responses.
+     */
+    public void invalidateAll() {
+        if (cachingClient != null) {
+            storage.clear();
+            invalidated.clear();
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getRevalidations() {
+        return revalidations.sum();
+    }
+
+    @Override
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        final long cached = getHits() + getRevalidations();
+        final long total = cached + getMisses();
+        return total > 0 ? (double) cached / total : 0;
+    }
+
+    void record(final CacheResponseStatus status) {
+        if (status == null) {
+            return;
+        }
+
+        switch (status) {
+        case CACHE_HIT:
+        case CACHE_MODULE_RESPONSE:
+            hits.increment();
+            break;
+        case VALIDATED:
+            revalidations.increment();
+            break;
+        default:
+            misses.increment();
+        }
+    }
+
+    private static URI withoutFragment(final URI uri) {
+        try {
+            return new URI(uri.getScheme(), uri.getSchemeSpecificPart(), null);
+        } catch (final URISyntaxException e) {
+            throw new RuntimeException("Should never happen", e);
+        }
+    }
+
+    /**
+     * Caching client builder that sends requests the cache can't answer to an existing client.
+     * <p>
+     * The existing client brings its own connection management, authentication, timeouts, etc. Responses that don't
+     * specify their freshness are given the configured max age before they reach the cache.
+     * </p>
+     */
+    private static class BackendCachingClientBuilder extends CachingHttpClientBuilder {
+
+        final CloseableHttpClient backend;
+
+        final long maxAge;
+
+        BackendCachingClientBuilder(final CloseableHttpClient backend, final long maxAge) {
+            this.backend = backend;
+            this.maxAge = maxAge;
+        }
+
+        @Override
+        protected ClientExecChain decorateMainExec(final ClientExecChain mainExec) {
+            return super.decorateMainExec((route, request, context, execAware) -> {
+                // A fresh context, so that the backend applies its own configuration (timeouts, auth, etc)
+                final CloseableHttpResponse response = backend.execute(route.getTargetHost(), request,
+                        HttpClientContext.create());
+
+                if (maxAge > 0 && !response.containsHeader(HttpHeaders.CACHE_CONTROL) && !response.containsHeader(
+                        HttpHeaders.EXPIRES)) {
+                    response.setHeader(HttpHeaders.CACHE_CONTROL, "max-age=" + maxAge);
+                }
+
+                return response;
+            });
+        }
+    }
+
+    /**
+     * Keeps small response bodies in memory, and larger ones in files.
+     */
+    private static class TieredResourceFactory implements ResourceFactory {
+
+        final int threshold;
+
+        final ResourceFactory memory = new HeapResourceFactory();
+
+        final ResourceFactory disk;
+
+        TieredResourceFactory(final int threshold, final ResourceFactory disk) {
+            this.threshold = threshold;
+            this.disk = disk;
+        }
+
+        @Override
+        public Resource generate(final String requestId, final InputStream instream, final InputLimit limit)
+                throws IOException {
+            final byte[] head = new byte[threshold + 1];
+
+            int length = 0;
+            int read;
+            while (length < head.length && (read = instream.read(head, length, head.length - length)) != -1) {
+                length += read;
+            }
+
+            if (length <= threshold) {
+                return memory.generate(requestId, new ByteArrayInputStream(head, 0, length), limit);
+            }
+
+            return disk.generate(requestId, new SequenceInputStream(new ByteArrayInputStream(head, 0, length),
+                    instream), limit);
+        }
+
+        @Override
+        public Resource copy(final String requestId, final Resource resource) throws IOException {
+            return resource instanceof FileResource ? disk.copy(requestId, resource) : memory.copy(requestId,
+                    resource);
+        }
+    }
+
+    /**
+     * Cache storage that can be emptied all at once.
+     */
+    private static class ClearableStorage implements HttpCacheStorage {
+
+        final CacheConfig config;
+
+        volatile ManagedHttpCacheStorage delegate;
+
+        ClearableStorage(final CacheConfig config) {
+            this.config = config;
+            this.delegate = new ManagedHttpCacheStorage(config);
+        }
+
+        @Override
+        public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+            delegate.putEntry(key, entry);
+        }
+
+        @Override
+        public HttpCacheEntry getEntry(final String key) throws IOException {
+            return delegate.getEntry(key);
+        }
+
+        @Override
+        public void removeEntry(final String key) throws IOException {
+            delegate.removeEntry(key);
+        }
+
+        @Override
+        public void updateEntry(final String key, final HttpCacheUpdateCallback callback) throws IOException,
+                HttpCacheUpdateException {
+            delegate.updateEntry(key, callback);
+        }
+
+        synchronized void clear() {
+            final ManagedHttpCacheStorage old = delegate;
+            delegate = new ManagedHttpCacheStorage(config);
+            old.shutdown();
+        }
+
+        void cleanResources() {
+            delegate.cleanResources();
+        }
+
+        void shutdown() {
+            delegate.shutdown();
+        }
+    }
+}
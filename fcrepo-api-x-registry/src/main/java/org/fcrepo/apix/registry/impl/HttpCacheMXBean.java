@@ -0,0 +1,62 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.registry.impl;
+
+/**
+ * HTTP cache metrics, as exported over JMX.
+ *
+ * @author apb@jhu.edu
+ */
+public interface HttpCacheMXBean {
+
+    /**
+     * Number of requests answered from the cache without contacting the server.
+     *
+     * @return number of requests.
+     */
+    long getHits();
+
+    /**
+     * Number of requests that were not in the cache, or could not be answered from it.
+     *
+     * @return number of requests.
+     */
+    long getMisses();
+
+    /**
+     * Number of requests answered from the cache after the server confirmed the cached response is current.
+     *
+     * @return number of requests.
+     */
+    long getRevalidations();
+
+    /**
+     * Number of times a cached response has been invalidated by a change to its resource.
+     *
+     * @return number of invalidations.
+     */
+    long getInvalidations();
+
+    /**
+     * Fraction of requests answered from the cache, with or without revalidation.
+     *
+     * @return number between 0 and 1.
+     */
+    double getHitRatio();
+}
@@ -19,23 +19,31 @@
 package org.fcrepo.apix.registry.impl;
 
 import static org.apache.http.HttpHeaders.ACCEPT;
+import static org.apache.http.HttpHeaders.CACHE_CONTROL;
 import static org.apache.http.HttpHeaders.CONTENT_TYPE;
 import static org.apache.http.HttpStatus.SC_GONE;
 import static org.apache.http.HttpStatus.SC_NOT_FOUND;
 import static org.apache.http.HttpStatus.SC_OK;
 
-import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.fcrepo.apix.model.WebResource;
+import org.fcrepo.apix.model.components.FreshReads;
 import org.fcrepo.apix.model.components.Registry;
 import org.fcrepo.apix.model.components.ResourceNotFoundException;
+import org.fcrepo.apix.model.components.SingleFlight;
+import org.fcrepo.apix.model.components.Updateable;
+import org.fcrepo.apix.registry.BufferPool;
+import org.fcrepo.apix.registry.BufferedWebResource;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.NullInputStream;
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -49,16 +57,44 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Simple HTTP-based registry that performs GET for lookups on a given URI.
+ * <p>
+ * Representations are read in full as they are retrieved, into pooled buffers that are released when the returned
+ * resource is closed. Concurrent lookups of the same URI are coalesced, so that they share a single request and a
+ * single copy of the representation.
+ * </p>
+ * <p>
+ * Lookups may be answered from an {@link HttpCache}, if one is configured. As an {@link Updateable}, this registry
+ * invalidates cached representations of resources as they change. Lookups made within a {@link FreshReads} scope
+ * are never answered from the cache, nor joined to other lookups.
+ * </p>
  *
  * @author apb@jhu.edu
  */
-public class HttpRegistry implements Registry {
+public class HttpRegistry implements Registry, Updateable {
 
     private static final Logger LOG = LoggerFactory.getLogger(HttpRegistry.class);
 
     private CloseableHttpClient client;
 
-    static final String RDF_MEDIA_TYPES = "application/rdf+xml, text/turtle";
+    static final String DEFAULT_ACCEPT = "application/n-triples, text/turtle;q=0.9, application/rdf+xml;q=0.5";
+
+    static final String PREFER = "Prefer";
+
+    static final String PREFER_MINIMAL_CONTAINER = "return=representation; omit=\"" +
+            "http://www.w3.org/ns/ldp#PreferContainment http://www.w3.org/ns/ldp#PreferMembership\"";
+
+    private boolean omitContainment = false;
+
+    private String accept = DEFAULT_ACCEPT;
+
+    private HttpCache cache;
+
+    private BufferPool buffers = new BufferPool();
+
+    // Concurrent lookups of the same resource share a single request
+    private final SingleFlight<URI, BufferedWebResource> gets = new SingleFlight<>();
+
+    private final SingleFlight<URI, Boolean> heads = new SingleFlight<>();
 
     /**
      * Set the underlying httpClient used by this registry.
@@ -69,48 +105,104 @@ public class HttpRegistry implements Registry {
         this.client = client;
     }
 
+    /**
+     * Ask the server to omit LDP containment and membership triples from representations.
+     * <p>
+     * Sends a {@code Prefer} header with each GET. Servers are free to ignore it, so callers must not rely on those
+     * triples being absent; they must never enable it if they rely on them being present (e.g. for listing a
+     * container).
+     * </p>
+     *
+     * @param omit true if containment and membership triples should be omitted.
+     */
+    public void setOmitContainment(final boolean omit) {
+        this.omitContainment = omit;
+    }
+
+    /**
+     * Set the media types requested in the {@code Accept} header of each GET.
+     * <p>
+     * By default, N-Triples is preferred, as it is the cheapest format to parse, with Turtle and then RDF/XML as
+     * fallbacks. Give distinct q-values to each type, otherwise the server is free to choose any of them.
+     * </p>
+     *
+     * @param accept value of the {@code Accept} header; if blank, the default is used.
+     */
+    public void setAccept(final String accept) {
+        this.accept = accept != null && !accept.trim().isEmpty() ? accept.trim() : DEFAULT_ACCEPT;
+    }
+
+    /**
+     * Answer lookups from the given cache, where possible.
+     *
+     * @param cache HTTP cache in front of the http client.
+     */
+    public void setCache(final HttpCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Set the pool of buffers that representations are read into.
+     *
+     * @param pool buffer pool.
+     */
+    public void setBufferPool(final BufferPool pool) {
+        this.buffers = pool;
+    }
+
     @Override
     public WebResource get(final URI id) {
 
-        final HttpGet get = new HttpGet(id);
-        get.setHeader(ACCEPT, RDF_MEDIA_TYPES);
+        if (FreshReads.required()) {
+            return fetch(id);
+        }
 
-        return new WebResource() {
+        final AtomicBoolean fetched = new AtomicBoolean();
+        final BufferedWebResource resource = gets.get(id, () -> {
+            fetched.set(true);
+            return fetch(id);
+        });
 
-            final ResponseMgr mgr = new ResponseMgr(get);
+        if (fetched.get()) {
+            return resource;
+        }
 
-            @Override
-            public URI uri() {
-                return id;
-            }
+        // Joined another lookup; its caller may have closed it already, in which case we're on our own.
+        final BufferedWebResource shared = resource.share();
+        return shared != null ? shared : fetch(id);
+    }
 
-            @Override
-            public InputStream representation() {
-                return mgr.getStream();
-            }
+    private BufferedWebResource fetch(final URI id) {
+        final HttpGet get = new HttpGet(id);
+        get.setHeader(ACCEPT, accept);
+        if (omitContainment) {
+            get.setHeader(PREFER, PREFER_MINIMAL_CONTAINER);
+        }
+        if (cache != null && FreshReads.required()) {
+            get.setHeader(CACHE_CONTROL, "no-cache");
+        }
 
-            @Override
-            public String name() {
-                return null;
-            }
+        try (CloseableHttpResponse response = execute(get);
+                InputStream body = content(response)) {
+            final Header contentType = response.getFirstHeader(CONTENT_TYPE);
 
-            @Override
-            public String contentType() {
-                return mgr.getResponse().getFirstHeader(CONTENT_TYPE).getValue();
-            }
+            return BufferedWebResource.read(body, contentType != null ? contentType.getValue() : null, id, null,
+                    buffers);
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            @Override
-            public void close() throws Exception {
-                mgr.close();
-            }
-        };
+    private static InputStream content(final HttpResponse response) throws IOException {
+        final InputStream content = response.getEntity() != null ? response.getEntity().getContent() : null;
+        return content != null ? content : new NullInputStream(0);
     }
 
     private CloseableHttpResponse execute(final HttpUriRequest request) {
         CloseableHttpResponse response = null;
 
         try {
-            response = client.execute(request);
+            response = cache != null ? cache.execute(request) : client.execute(request);
         } catch (final Exception e) {
             throw new RuntimeException(e);
         }
@@ -151,78 +243,34 @@ public class HttpRegistry implements Registry {
         }
     }
 
-    // Some last-minute refactoring, there might be a better way to do this
-    private class ResponseMgr {
-
-        final HttpGet get;
-
-        CloseableHttpResponse response;
-
-        boolean isClosed = true;
-
-        ResponseMgr(final HttpGet get) {
-            this.get = get;
-            getResponse();
-        }
-
-        CloseableHttpResponse getResponse() {
-            if (isClosed) {
-                try {
-                    if (response != null) {
-                        response.close();
-                    }
-                    response = execute(get);
-                    isClosed = false;
-                } catch (final IOException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-            return response;
-        }
-
-        InputStream getStream() {
-            try {
-                if (!isClosed && response.getEntity().isRepeatable()) {
-                    return response.getEntity().getContent();
-                } else {
-                    getResponse();
-                    return new FilterInputStream(response.getEntity().getContent()) {
-
-                        @Override
-                        public void close() throws IOException {
-                            isClosed = true;
-                            super.close();
-                        }
-                    };
-                }
+    @Override
+    public boolean contains(final URI uri) {
+        return heads.get(uri, () -> {
+            try (CloseableHttpResponse response = client.execute(new HttpHead(uri))) {
+                return response.getStatusLine().getStatusCode() == HttpStatus.SC_OK;
             } catch (final Exception e) {
                 throw new RuntimeException(e);
             }
-        }
+        });
+    }
 
-        public void close() throws IOException {
-            if (response != null) {
-                response.close();
-            }
-        }
+    @Override
+    public URI put(final WebResource resource, final boolean asBinary) {
+        throw new UnsupportedOperationException();
     }
 
     @Override
-    public boolean contains(final URI uri) {
-        try (CloseableHttpResponse response = client.execute(new HttpHead(uri))) {
-            return response.getStatusLine().getStatusCode() == HttpStatus.SC_OK;
-        } catch (final Exception e) {
-            throw new RuntimeException(e);
-        }
+    public URI put(final WebResource resource) {
+        throw new UnsupportedOperationException();
     }
 
     @Override
-    public URI put(final WebResource resource, final boolean asBinary) {
+    public URI post(final URI container, final WebResource resource) {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    public URI put(final WebResource resource) {
+    public void patch(final URI uri, final String sparqlUpdate) {
         throw new UnsupportedOperationException();
     }
 
@@ -245,4 +293,18 @@ public class HttpRegistry implements Registry {
     public boolean hasInDomain(final URI uri) {
         return uri.getScheme().startsWith("http");
     }
+
+    @Override
+    public void update() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    @Override
+    public void update(final URI inResponseTo) {
+        if (cache != null) {
+            cache.invalidate(inResponseTo);
+        }
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.InputStream;
+import java.net.URI;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class BufferedWebResourceTest {
+
+    static final String CONTENT = "The quick brown fox jumps over the lazy dog";
+
+    static final URI RESOURCE = URI.create("http://example.org/resource");
+
+    // Representations span several buffers, and can be read repeatedly and independently
+    @Test
+    public void readViewsTest() throws Exception {
+        final BufferPool pool = pool(false);
+
+        try (BufferedWebResource resource = read(pool)) {
+            assertEquals(CONTENT.length(), resource.length());
+            assertEquals(6, resource.buffers().size());
+            assertEquals("text/plain", resource.contentType());
+            assertEquals(RESOURCE, resource.uri());
+
+            final InputStream first = resource.representation();
+            final InputStream second = resource.representation();
+
+            assertEquals(CONTENT.substring(0, 10), new String(IOUtils.toByteArray(first, 10), "UTF-8"));
+            assertEquals(CONTENT, IOUtils.toString(second, "UTF-8"));
+            assertEquals(CONTENT.substring(10), IOUtils.toString(first, "UTF-8"));
+        }
+    }
+
+    // Direct buffers work the same
+    @Test
+    public void directTest() throws Exception {
+        try (BufferedWebResource resource = read(pool(true))) {
+            assertEquals(CONTENT, IOUtils.toString(resource.representation(), "UTF-8"));
+            assertEquals(CONTENT, IOUtils.toString(resource.representation(), "UTF-8"));
+        }
+    }
+
+    // Buffers go back to the pool once every sharing instance is closed
+    @Test
+    public void releaseTest() throws Exception {
+        final BufferPool pool = pool(false);
+
+        final BufferedWebResource resource = read(pool);
+        final BufferedWebResource shared = resource.share();
+
+        resource.close();
+        resource.close();
+        assertEquals(0, pool.available());
+        assertEquals(CONTENT, IOUtils.toString(shared.representation(), "UTF-8"));
+
+        final InputStream stream = shared.representation();
+        shared.close();
+        assertEquals(6, pool.available());
+        assertNull(resource.share());
+
+        try {
+            stream.read();
+            fail("Should not be able to read released buffers");
+        } catch (final Exception e) {
+            // expected
+        }
+
+        // Re-used buffers
+        try (BufferedWebResource again = read(pool)) {
+            assertEquals(0, pool.available());
+            assertEquals(CONTENT, IOUtils.toString(again.representation(), "UTF-8"));
+        }
+    }
+
+    // Empty representations take no buffers
+    @Test
+    public void emptyTest() throws Exception {
+        final BufferPool pool = pool(false);
+
+        try (BufferedWebResource resource = BufferedWebResource.read(IOUtils.toInputStream("", "UTF-8"), null,
+                null, null, pool)) {
+            assertEquals(0, resource.length());
+            assertEquals(-1, resource.representation().read());
+        }
+        assertEquals(1, pool.available());
+    }
+
+    private static BufferPool pool(final boolean direct) {
+        final BufferPool pool = new BufferPool();
+        pool.setChunkSize(8);
+        pool.setDirect(direct);
+        return pool;
+    }
+
+    private static BufferedWebResource read(final BufferPool pool) throws Exception {
+        return BufferedWebResource.read(IOUtils.toInputStream(CONTENT, "UTF-8"), "text/plain", RESOURCE, null,
+                pool);
+    }
+}
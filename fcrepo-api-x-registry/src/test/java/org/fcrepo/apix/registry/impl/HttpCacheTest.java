@@ -0,0 +1,204 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.registry.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class HttpCacheTest {
+
+    static final URI RESOURCE = URI.create("http://example.org/resource");
+
+    static final String ETAG = "\"1\"";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    final HttpCache toTest = new HttpCache();
+
+    final AtomicInteger requests = new AtomicInteger();
+
+    final AtomicInteger conditionalRequests = new AtomicInteger();
+
+    String content = "CONTENT";
+
+    @Before
+    public void setUp() throws Exception {
+        final CloseableHttpClient backend = mock(CloseableHttpClient.class);
+        when(backend.execute(any(HttpHost.class), any(HttpRequest.class), any(HttpContext.class))).thenAnswer(
+                i -> respond((HttpRequest) i.getArguments()[1]));
+
+        toTest.setHttpClient(backend);
+        toTest.setEnabled(true);
+        toTest.setName("test");
+    }
+
+    @After
+    public void tearDown() {
+        toTest.shutdown();
+    }
+
+    // Responses without explicit freshness are revalidated
+    @Test
+    public void revalidationTest() throws Exception {
+        toTest.init();
+
+        assertEquals(content, get());
+        assertEquals(content, get());
+        assertEquals(content, get());
+
+        assertEquals(3, requests.get());
+        assertEquals(2, conditionalRequests.get());
+        assertEquals(1, toTest.getMisses());
+        assertEquals(2, toTest.getRevalidations());
+        assertEquals(0, toTest.getHits());
+    }
+
+    // Responses are given the configured max age
+    @Test
+    public void maxAgeTest() throws Exception {
+        toTest.setMaxAge(60);
+        toTest.init();
+
+        assertEquals(content, get());
+        assertEquals(content, get());
+
+        assertEquals(1, requests.get());
+        assertEquals(1, toTest.getHits());
+        assertEquals(0.5, toTest.getHitRatio(), 0.0);
+    }
+
+    // Invalidated resources are re-read from the server
+    @Test
+    public void invalidationTest() throws Exception {
+        toTest.setMaxAge(60);
+        toTest.init();
+
+        get();
+        content = "NEW CONTENT";
+        toTest.invalidate(URI.create(RESOURCE + "#fragment"));
+
+        assertEquals(content, get());
+        assertEquals(content, get());
+
+        assertEquals(2, requests.get());
+        assertEquals(0, conditionalRequests.get());
+        assertEquals(1, toTest.getInvalidations());
+    }
+
+    // Large responses are cached on disk
+    @Test
+    public void diskTest() throws Exception {
+        final File dir = folder.newFolder();
+        content = "LARGER CONTENT";
+
+        toTest.setMaxAge(60);
+        toTest.setMemoryThreshold(4);
+        toTest.setDirectory(dir.getPath());
+        toTest.init();
+
+        assertEquals(content, get());
+        assertEquals(1, dir.listFiles().length);
+        assertEquals(content, get());
+        assertEquals(1, requests.get());
+    }
+
+    // A disabled cache sends everything to the server
+    @Test
+    public void disabledTest() throws Exception {
+        toTest.setEnabled(false);
+        toTest.setMaxAge(60);
+        toTest.init();
+
+        final CloseableHttpClient backend = mock(CloseableHttpClient.class);
+        final CloseableHttpResponse response = new Response(HttpStatus.SC_OK);
+        when(backend.execute(any(HttpGet.class))).thenReturn(response);
+        toTest.setHttpClient(backend);
+
+        final HttpGet get = new HttpGet(RESOURCE);
+        assertEquals(response, toTest.execute(get));
+        assertEquals(response, toTest.execute(get));
+        assertEquals(0, toTest.getHits() + toTest.getMisses());
+    }
+
+    private String get() throws Exception {
+        try (CloseableHttpResponse response = toTest.execute(new HttpGet(RESOURCE))) {
+            assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+            return EntityUtils.toString(response.getEntity());
+        }
+    }
+
+    private CloseableHttpResponse respond(final HttpRequest request) throws Exception {
+        requests.incrementAndGet();
+
+        final Response response;
+        if (request.containsHeader(HttpHeaders.IF_NONE_MATCH)) {
+            conditionalRequests.incrementAndGet();
+            response = new Response(HttpStatus.SC_NOT_MODIFIED);
+        } else {
+            response = new Response(HttpStatus.SC_OK);
+            response.setEntity(new StringEntity(content));
+        }
+
+        response.setHeader(HttpHeaders.DATE, DateUtils.formatDate(new Date()));
+        response.setHeader(HttpHeaders.ETAG, ETAG);
+        return response;
+    }
+
+    static class Response extends BasicHttpResponse implements CloseableHttpResponse {
+
+        Response(final int status) {
+            super(HttpVersion.HTTP_1_1, status, null);
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.fcrepo.apix.registry.impl;
 import static org.apache.http.HttpStatus.SC_OK;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -29,17 +30,27 @@ import static org.mockito.Mockito.when;
 
 import java.io.InputStream;
 import java.net.URI;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.fcrepo.apix.model.WebResource;
+import org.fcrepo.apix.model.components.FreshReads;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.protocol.HttpContext;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
@@ -129,6 +140,86 @@ public class HttpRegistryTest {
 
     }
 
+    // Verify that containment and membership triples are omitted only when asked to
+    @Test
+    public void omitContainmentTest() throws Exception {
+        final HttpRegistry toTest = new HttpRegistry();
+        final URI uri = URI.create("http://test");
+
+        final CloseableHttpClient client = mockClient(uri, null, null, SC_OK);
+        toTest.setHttpClient(client);
+
+        toTest.get(uri);
+        verify(client).execute(argThat(prefers(null)));
+
+        toTest.setOmitContainment(true);
+        toTest.get(uri);
+        verify(client).execute(argThat(prefers(HttpRegistry.PREFER_MINIMAL_CONTAINER)));
+    }
+
+    // Verify that N-Triples is preferred, unless configured otherwise
+    @Test
+    public void acceptTest() throws Exception {
+        final HttpRegistry toTest = new HttpRegistry();
+        final URI uri = URI.create("http://test");
+
+        final CloseableHttpClient client = mockClient(uri, null, null, SC_OK);
+        toTest.setHttpClient(client);
+
+        toTest.get(uri);
+        verify(client).execute(argThat(hasHeader(HttpHeaders.ACCEPT, HttpRegistry.DEFAULT_ACCEPT)));
+
+        toTest.setAccept("text/turtle");
+        toTest.get(uri);
+        verify(client).execute(argThat(hasHeader(HttpHeaders.ACCEPT, "text/turtle")));
+    }
+
+    // Verify that lookups which must be fresh are not answered from the cache, but do refresh it
+    @Test
+    public void freshReadTest() throws Exception {
+        final HttpRegistry toTest = new HttpRegistry();
+        final URI uri = URI.create("http://test");
+
+        final AtomicReference<String> content = new AtomicReference<>("OLD");
+        final CloseableHttpClient backend = mock(CloseableHttpClient.class);
+        when(backend.execute(any(HttpHost.class), any(HttpRequest.class), any(HttpContext.class))).thenAnswer(i -> {
+            final HttpCacheTest.Response r = new HttpCacheTest.Response(SC_OK);
+            r.setEntity(new StringEntity(content.get()));
+            r.setHeader(HttpHeaders.DATE, DateUtils.formatDate(new Date()));
+            return r;
+        });
+
+        final HttpCache cache = new HttpCache();
+        cache.setHttpClient(backend);
+        cache.setEnabled(true);
+        cache.setMaxAge(60);
+        cache.setName("fresh");
+        cache.init();
+
+        try {
+            toTest.setHttpClient(backend);
+            toTest.setCache(cache);
+
+            assertEquals("OLD", read(toTest, uri));
+            content.set("NEW");
+            assertEquals("OLD", read(toTest, uri));
+
+            assertEquals("NEW", FreshReads.of(() -> read(toTest, uri)));
+            assertEquals("NEW", read(toTest, uri));
+            verify(backend, times(2)).execute(any(HttpHost.class), any(HttpRequest.class), any(HttpContext.class));
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    private static String read(final HttpRegistry registry, final URI uri) {
+        try (WebResource resource = registry.get(uri)) {
+            return IOUtils.toString(resource.representation(), "UTF-8");
+        } catch (final Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private CloseableHttpClient mockClient(final URI uri, final InputStream content, final String contentType,
             final int statusCode)
             throws Exception {
@@ -152,6 +243,26 @@ public class HttpRegistryTest {
         return client;
     }
 
+    Matcher<HttpUriRequest> prefers(final String preference) {
+        return hasHeader(HttpRegistry.PREFER, preference);
+    }
+
+    Matcher<HttpUriRequest> hasHeader(final String name, final String value) {
+        return new BaseMatcher<HttpUriRequest>() {
+
+            @Override
+            public boolean matches(final Object item) {
+                final Header header = ((HttpUriRequest) item).getFirstHeader(name);
+                return value == null ? header == null : header != null && value.equals(header.getValue());
+            }
+
+            @Override
+            public void describeTo(final Description description) {
+                description.appendText(name + ": " + value);
+            }
+        };
+    }
+
     Matcher<HttpUriRequest> isGetRequestTo(final URI uri) {
         return new BaseMatcher<HttpUriRequest>() {
 
@@ -0,0 +1,239 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.routing;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live request statistics of service instance endpoints.
+ * <p>
+ * Each call to an endpoint is bracketed by {@link #start(URI)} and {@link Call#complete(boolean)}, from which the
+ * number of outstanding requests and an exponentially weighted moving average of the latency of each endpoint are
+ * maintained.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class EndpointStatistics {
+
+    /** Default weight of the latest sample in the latency moving average */
+    public static final double DEFAULT_DECAY = 0.3;
+
+    private final Map<URI, Stats> stats = new ConcurrentHashMap<>();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private double decay = DEFAULT_DECAY;
+
+    /**
+     * Set the weight of the latest sample in the latency moving average.
+     *
+     * @param decay Number between 0 (exclusive) and 1 (inclusive).
+     */
+    public void setDecay(final double decay) {
+        if (decay <= 0 || decay > 1) {
+            throw new IllegalArgumentException("Decay must be in (0, 1], got " + decay);
+        }
+        this.decay = decay;
+    }
+
+    /**
+     * Add a listener to be notified of every completed call.
+     *
+     * @param listener the listener.
+     */
+    public void addListener(final Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param listener the listener.
+     */
+    public void removeListener(final Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Statistics of an endpoint.
+     *
+     * @param endpoint Endpoint URI.
+     * @return statistics, never null.
+     */
+    public Stats of(final URI endpoint) {
+        return stats.computeIfAbsent(endpoint, Stats::new);
+    }
+
+    /**
+     * Statistics of all endpoints that have been called.
+     *
+     * @return unmodifiable map of endpoint URI to statistics.
+     */
+    public Map<URI, Stats> all() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * Record the start of a request to an endpoint.
+     *
+     * @param endpoint Endpoint URI.
+     * @return Call, which must be completed when the response is received or the request fails.
+     */
+    public Call start(final URI endpoint) {
+        final Stats s = of(endpoint);
+        s.inFlight.incrementAndGet();
+        return new Call(s, System.nanoTime());
+    }
+
+    /**
+     * An outstanding request to an endpoint.
+     */
+    public class Call {
+
+        private final Stats stats;
+
+        private final long start;
+
+        private boolean completed;
+
+        Call(final Stats stats, final long start) {
+            this.stats = stats;
+            this.start = start;
+        }
+
+        /**
+         * Endpoint URI.
+         *
+         * @return the URI.
+         */
+        public URI endpoint() {
+            return stats.endpoint;
+        }
+
+        /**
+         * Record completion of the request. Calling this more than once has no effect.
+         *
+         * @param failed whether the request failed.
+         * @return Elapsed time in nanoseconds.
+         */
+        public synchronized long complete(final boolean failed) {
+            final long elapsed = System.nanoTime() - start;
+            if (!completed) {
+                completed = true;
+                stats.record(elapsed, failed, decay);
+                listeners.forEach(l -> l.completed(stats.endpoint, elapsed, failed));
+            }
+            return elapsed;
+        }
+    }
+
+    /**
+     * Notified of completed calls.
+     */
+    public interface Listener {
+
+        /**
+         * A call to an endpoint has completed.
+         *
+         * @param endpoint Endpoint URI.
+         * @param elapsed Elapsed time in nanoseconds.
+         * @param failed Whether the call failed.
+         */
+        void completed(URI endpoint, long elapsed, boolean failed);
+    }
+
+    /**
+     * Request statistics of a single endpoint.
+     */
+    public static class Stats {
+
+        private final URI endpoint;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final LongAdder requests = new LongAdder();
+
+        private final LongAdder failures = new LongAdder();
+
+        private volatile double latency = -1;
+
+        Stats(final URI endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        /**
+         * Number of outstanding requests.
+         *
+         * @return number of requests started, but not yet completed.
+         */
+        public int inFlight() {
+            return inFlight.get();
+        }
+
+        /**
+         * Moving average of latency.
+         *
+         * @return latency in nanoseconds, or a negative number if no request has completed yet.
+         */
+        public double latency() {
+            return latency;
+        }
+
+        /**
+         * Number of completed requests.
+         *
+         * @return number of requests.
+         */
+        public long requests() {
+            return requests.sum();
+        }
+
+        /**
+         * Number of failed requests.
+         *
+         * @return number of requests.
+         */
+        public long failures() {
+            return failures.sum();
+        }
+
+        synchronized void record(final long elapsed, final boolean failed, final double decay) {
+            inFlight.decrementAndGet();
+            requests.increment();
+            if (failed) {
+                failures.increment();
+            }
+            latency = latency < 0 ? elapsed : decay * elapsed + (1 - decay) * latency;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: inFlight=%d, latency=%.1fms, requests=%d, failures=%d",
+                    endpoint, inFlight(), latency / 1e6, requests(), failures());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.routing;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Selects the service instance endpoint a request to a service is routed to.
+ *
+ * @author apb@jhu.edu
+ */
+public interface LoadBalancer {
+
+    /**
+     * Select an endpoint.
+     *
+     * @param service URI of the service being invoked.
+     * @param candidates Endpoints of all instances of the service, never empty.
+     * @return URI of one of the candidate endpoints.
+     */
+    URI select(URI service, List<Candidate> candidates);
+
+    /**
+     * Endpoint of a service instance, as a candidate for selection.
+     */
+    final class Candidate {
+
+        private final URI endpoint;
+
+        private final int weight;
+
+        /**
+         * Create a candidate.
+         *
+         * @param endpoint endpoint URI.
+         * @param weight weight of the service instance the endpoint belongs to.
+         */
+        public Candidate(final URI endpoint, final int weight) {
+            this.endpoint = endpoint;
+            this.weight = weight;
+        }
+
+        /**
+         * Endpoint URI.
+         *
+         * @return the URI.
+         */
+        public URI endpoint() {
+            return endpoint;
+        }
+
+        /**
+         * Relative share of requests the endpoint's instance should receive.
+         *
+         * @return non-negative weight.
+         */
+        public int weight() {
+            return weight;
+        }
+
+        @Override
+        public String toString() {
+            return endpoint + " (weight " + weight + ")";
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.routing;
+
+/**
+ * Thrown when a service has endpoints, but none of them may currently be used.
+ *
+ * @author apb@jhu.edu
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfter;
+
+    /**
+     * Create the exception.
+     *
+     * @param message The message
+     * @param retryAfter Seconds after which an endpoint may be available again.
+     */
+    public ServiceUnavailableException(final String message, final long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Seconds after which an endpoint may be available again.
+     *
+     * @return number of seconds.
+     */
+    public long retryAfter() {
+        return retryAfter;
+    }
+}
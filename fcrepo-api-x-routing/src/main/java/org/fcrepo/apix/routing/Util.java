@@ -19,10 +19,11 @@
 package org.fcrepo.apix.routing;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.fcrepo.apix.model.Extension;
 import org.fcrepo.apix.model.ServiceInstance;
@@ -37,7 +38,8 @@ import org.fcrepo.apix.model.components.ServiceRegistry;
  */
 public abstract class Util {
 
-    private static final Random random = new Random();
+    private static final LoadBalancer RANDOM = (service, candidates) -> candidates.get(
+            ThreadLocalRandom.current().nextInt(candidates.size())).endpoint();
 
     /**
      * Normalize a URI path segment to remove forward and trailing slashes, if present.
@@ -73,64 +75,102 @@ public abstract class Util {
     }
 
     /**
-     * Find an instance of the consumed service for an exposing extension.
+     * Find an instance of the consumed service for an exposing extension, selected at random.
      *
      * @param extension The extension
      * @param serviceRegistry A service registry.
      * @return URI if a service instance endpoint.
      */
     public static URI exposedServiceInstance(final Extension extension, final ServiceRegistry serviceRegistry) {
+        return exposedServiceInstance(extension, serviceRegistry, RANDOM);
+    }
+
+    /**
+     * Find an instance of the consumed service for an exposing extension.
+     *
+     * @param extension The extension
+     * @param serviceRegistry A service registry.
+     * @param balancer Selects among endpoints of the service's instances.
+     * @return URI if a service instance endpoint.
+     */
+    public static URI exposedServiceInstance(final Extension extension, final ServiceRegistry serviceRegistry,
+            final LoadBalancer balancer) {
         final URI consumedServiceURI = exactlyOne(extension.exposed().consumed(),
                 "Exposed services must have exactly one consumed service in extension: " +
                         extension.uri());
 
-        return instance(consumedServiceURI, serviceRegistry);
+        return serviceInstance(consumedServiceURI, serviceRegistry, balancer);
     }
 
     /**
-     * Find instance of the consumed service for an intercepting extension.
+     * Find instance of the consumed service for an intercepting extension, selected at random.
      *
      * @param extension The extension
      * @param serviceRegistry The service registry
      * @return URI of a service instance endpoint
      */
     public static URI interceptingServiceInstance(final Extension extension, final ServiceRegistry serviceRegistry) {
+        return interceptingServiceInstance(extension, serviceRegistry, RANDOM);
+    }
+
+    /**
+     * Find instance of the consumed service for an intercepting extension.
+     *
+     * @param extension The extension
+     * @param serviceRegistry The service registry
+     * @param balancer Selects among endpoints of the service's instances.
+     * @return URI of a service instance endpoint
+     */
+    public static URI interceptingServiceInstance(final Extension extension, final ServiceRegistry serviceRegistry,
+            final LoadBalancer balancer) {
         final URI consumedServiceURI = exactlyOne(extension.intercepted().consumed(),
                 "Exposed services must have exactly one consumed service in extension: " +
                         extension.uri());
-        return instance(consumedServiceURI, serviceRegistry);
+        return serviceInstance(consumedServiceURI, serviceRegistry, balancer);
 
     }
 
-    private static URI instance(final URI serviceURI, final ServiceRegistry serviceRegistry) {
-        final ServiceInstanceRegistry instanceRegistry = serviceRegistry.instancesOf(serviceRegistry.getService(
-                serviceURI));
+    /**
+     * Find an endpoint of an instance of the given service.
+     *
+     * @param serviceURI URI of the service.
+     * @param serviceRegistry The service registry
+     * @param balancer Selects among endpoints of the service's instances.
+     * @return URI of a service instance endpoint
+     * @throws ResourceNotFoundException if the service has no instances, or its instances have no endpoints.
+     */
+    public static URI serviceInstance(final URI serviceURI, final ServiceRegistry serviceRegistry,
+            final LoadBalancer balancer) {
+        final ServiceInstanceRegistry instanceRegistry = serviceRegistry.instancesOf(serviceURI);
 
         if (instanceRegistry == null) {
             throw new ResourceNotFoundException("No instance registry for service " + serviceURI);
         }
 
-        final ServiceInstance instance = oneOf(instanceRegistry.instances(),
-                "There must be at least one service instance for " + serviceURI);
+        final List<ServiceInstance> instances = instanceRegistry.instances();
 
-        return oneOf(
-                instance.endpoints(),
-                "There must be at least one endpoint for instances of " + serviceURI);
-    }
+        if (instances.isEmpty()) {
+            throw new ResourceNotFoundException("There must be at least one service instance for " + serviceURI);
+        }
 
-    private static <T> T exactlyOne(final Collection<T> of, final String errMsg) {
-        if (of.size() != 1) {
-            throw new ResourceNotFoundException(errMsg);
+        final List<LoadBalancer.Candidate> candidates = new ArrayList<>();
+        for (final ServiceInstance instance : instances) {
+            final int weight = instance.weight();
+            instance.endpoints().forEach(endpoint -> candidates.add(new LoadBalancer.Candidate(endpoint, weight)));
         }
 
-        return of.iterator().next();
+        if (candidates.isEmpty()) {
+            throw new ResourceNotFoundException("There must be at least one endpoint for instances of " + serviceURI);
+        }
+
+        return balancer.select(serviceURI, candidates);
     }
 
-    private static <T> T oneOf(final List<T> of, final String errMsg) {
-        if (of.isEmpty()) {
+    private static <T> T exactlyOne(final Collection<T> of, final String errMsg) {
+        if (of.size() != 1) {
             throw new ResourceNotFoundException(errMsg);
         }
 
-        return of.get(random.nextInt(of.size()));
+        return of.iterator().next();
     }
 }
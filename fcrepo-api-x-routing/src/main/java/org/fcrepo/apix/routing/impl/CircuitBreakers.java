@@ -0,0 +1,304 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.routing.impl;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.fcrepo.apix.routing.EndpointStatistics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-endpoint circuit breakers, driven by the outcome of calls to service instance endpoints.
+ * <p>
+ * A breaker opens when an endpoint has failed a number of consecutive calls, or when, over a window of recent calls,
+ * its error rate or a percentile of its latency exceeds a threshold. An open endpoint is not selected. Once a breaker
+ * has been open for a while, a single trial request is let through (half-open); if it succeeds the breaker closes,
+ * otherwise it opens again. Calls that started before the trial, and complete while it is in progress, are ignored.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class CircuitBreakers implements EndpointStatistics.Listener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreakers.class);
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final Map<URI, Breaker> breakers = new ConcurrentHashMap<>();
+
+    private int consecutiveFailures = 5;
+
+    private int window = 20;
+
+    private int minimumCalls = 10;
+
+    private double errorRate = 0.5;
+
+    private long latencyThreshold = 0;
+
+    private double latencyPercentile = 0.99;
+
+    private long openDuration = 30000;
+
+    LongSupplier clock = System::currentTimeMillis;
+
+    /**
+     * Listen to calls recorded in the given statistics.
+     *
+     * @param stats Endpoint statistics.
+     */
+    public void setEndpointStatistics(final EndpointStatistics stats) {
+        stats.addListener(this);
+    }
+
+    /**
+     * Set the number of consecutive failed calls that opens a breaker.
+     *
+     * @param count Number of calls, or 0 to not consider consecutive failures.
+     */
+    public void setConsecutiveFailures(final int count) {
+        this.consecutiveFailures = count;
+    }
+
+    /**
+     * Set the number of recent calls considered for error rate and latency.
+     *
+     * @param calls Number of calls.
+     */
+    public void setWindow(final int calls) {
+        this.window = Math.max(1, calls);
+    }
+
+    /**
+     * Set the minimum number of calls in the window before error rate and latency are considered.
+     *
+     * @param calls Number of calls.
+     */
+    public void setMinimumCalls(final int calls) {
+        this.minimumCalls = Math.max(1, calls);
+    }
+
+    /**
+     * Set the fraction of failed calls in the window that opens a breaker.
+     *
+     * @param rate Number between 0 and 1; 0 or less to not consider error rate.
+     */
+    public void setErrorRate(final double rate) {
+        this.errorRate = rate;
+    }
+
+    /**
+     * Set the latency that, if exceeded by the configured percentile of calls in the window, opens a breaker.
+     *
+     * @param millis Latency in milliseconds, or 0 to not consider latency.
+     */
+    public void setLatencyThreshold(final long millis) {
+        this.latencyThreshold = millis;
+    }
+
+    /**
+     * Set the latency percentile compared against the latency threshold.
+     *
+     * @param percentile Number between 0 (exclusive) and 1 (inclusive).
+     */
+    public void setLatencyPercentile(final double percentile) {
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("Percentile must be in (0, 1], got " + percentile);
+        }
+        this.latencyPercentile = percentile;
+    }
+
+    /**
+     * Set how long a breaker stays open before a trial request is let through.
+     *
+     * @param millis Duration in milliseconds.
+     */
+    public void setOpenDuration(final long millis) {
+        this.openDuration = millis;
+    }
+
+    @Override
+    public void completed(final URI endpoint, final long elapsed, final boolean failed) {
+        breakers.computeIfAbsent(endpoint, Breaker::new).record(elapsed, failed);
+    }
+
+    /**
+     * Determine whether an endpoint may be selected normally.
+     *
+     * @param endpoint Endpoint URI.
+     * @return true if the endpoint's breaker is closed.
+     */
+    public boolean isClosed(final URI endpoint) {
+        return state(endpoint) == State.CLOSED;
+    }
+
+    /**
+     * Claim the trial request of an endpoint whose breaker has been open long enough.
+     *
+     * @param endpoint Endpoint URI.
+     * @return true if the caller should send a trial request to the endpoint.
+     */
+    public boolean tryTrial(final URI endpoint) {
+        final Breaker breaker = breakers.get(endpoint);
+        return breaker != null && breaker.state != State.CLOSED && breaker.tryTrial(clock.getAsLong());
+    }
+
+    /**
+     * Time until any of the given endpoints may receive a trial request.
+     *
+     * @param endpoints Endpoint URIs.
+     * @return Number of seconds, at least 1.
+     */
+    public long retryAfter(final Collection<URI> endpoints) {
+        final long now = clock.getAsLong();
+        final long earliest = endpoints.stream()
+                .map(breakers::get)
+                .filter(b -> b != null && b.state != State.CLOSED)
+                .mapToLong(Breaker::trialAt)
+                .min().orElse(now);
+
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(earliest - now + 999));
+    }
+
+    State state(final URI endpoint) {
+        final Breaker breaker = breakers.get(endpoint);
+        return breaker != null ? breaker.state : State.CLOSED;
+    }
+
+    private class Breaker {
+
+        final URI endpoint;
+
+        volatile State state = State.CLOSED;
+
+        // Time the breaker opened, or the current trial started
+        long since;
+
+        int failuresInARow;
+
+        // Ring buffer of recent calls
+        final boolean[] failed = new boolean[window];
+
+        final long[] latencies = new long[window];
+
+        int calls;
+
+        int next;
+
+        Breaker(final URI endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        synchronized void record(final long elapsed, final boolean failure) {
+            switch (state) {
+            case OPEN:
+                // Calls started before the breaker opened
+                return;
+            case HALF_OPEN:
+                if (clock.getAsLong() - TimeUnit.NANOSECONDS.toMillis(elapsed) < since) {
+                    // Started before the trial, so says nothing about whether the endpoint has recovered
+                    return;
+                }
+                if (failure) {
+                    open("trial request failed");
+                } else {
+                    close();
+                }
+                return;
+            default:
+                break;
+            }
+
+            failed[next] = failure;
+            latencies[next] = elapsed;
+            next = (next + 1) % failed.length;
+            calls = Math.min(calls + 1, failed.length);
+            failuresInARow = failure ? failuresInARow + 1 : 0;
+
+            if (consecutiveFailures > 0 && failuresInARow >= consecutiveFailures) {
+                open(failuresInARow + " consecutive failures");
+            } else if (calls >= minimumCalls) {
+                final double rate = errorRate();
+                final long latency = latency();
+
+                if (errorRate > 0 && rate >= errorRate) {
+                    open(String.format("error rate %.2f", rate));
+                } else if (latencyThreshold > 0 && latency > latencyThreshold) {
+                    open(String.format("p%s latency %dms", latencyPercentile * 100, latency));
+                }
+            }
+        }
+
+        synchronized boolean tryTrial(final long now) {
+            if (state != State.CLOSED && now >= trialAt()) {
+                state = State.HALF_OPEN;
+                since = now;
+                LOG.info("Sending trial request to endpoint <{}>", endpoint);
+                return true;
+            }
+            return false;
+        }
+
+        // An unfinished trial is given up on after the open duration, so that the breaker can't get stuck
+        long trialAt() {
+            return since + openDuration;
+        }
+
+        private double errorRate() {
+            int failures = 0;
+            for (int i = 0; i < calls; i++) {
+                if (failed[i]) {
+                    failures++;
+                }
+            }
+            return (double) failures / calls;
+        }
+
+        private long latency() {
+            final long[] sorted = Arrays.copyOf(latencies, calls);
+            Arrays.sort(sorted);
+            final int index = Math.max(0, (int) Math.ceil(latencyPercentile * calls) - 1);
+            return TimeUnit.NANOSECONDS.toMillis(sorted[index]);
+        }
+
+        private void open(final String reason) {
+            state = State.OPEN;
+            since = clock.getAsLong();
+            LOG.warn("Opening circuit breaker for endpoint <{}>: {}", endpoint, reason);
+        }
+
+        private void close() {
+            state = State.CLOSED;
+            calls = 0;
+            next = 0;
+            failuresInARow = 0;
+            LOG.info("Closing circuit breaker for endpoint <{}>", endpoint);
+        }
+    }
+}
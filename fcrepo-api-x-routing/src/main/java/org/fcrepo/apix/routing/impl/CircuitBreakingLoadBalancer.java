@@ -0,0 +1,99 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.routing.impl;
+
+import java.net.URI;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.fcrepo.apix.routing.LoadBalancer;
+import org.fcrepo.apix.routing.ServiceUnavailableException;
+
+/**
+ * Load balancer that skips endpoints whose circuit breaker is open.
+ * <p>
+ * An endpoint that is due for a trial request is selected ahead of all others. If every endpoint is open, a
+ * {@link ServiceUnavailableException} is thrown immediately.
+ * </p>
+ * <p>
+ * Trials are selected here rather than by the delegate, so if a health check is set, only endpoints it considers
+ * healthy are given a trial. An ejected endpoint is never sent a request just because its breaker is due to close.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class CircuitBreakingLoadBalancer implements LoadBalancer {
+
+    private LoadBalancer delegate;
+
+    private CircuitBreakers breakers;
+
+    private EndpointHealthCheck healthCheck;
+
+    /**
+     * Set the load balancer that selects among endpoints with closed breakers.
+     *
+     * @param delegate Underlying load balancer.
+     */
+    public void setDelegate(final LoadBalancer delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Set the circuit breakers.
+     *
+     * @param breakers The circuit breakers.
+     */
+    public void setCircuitBreakers(final CircuitBreakers breakers) {
+        this.breakers = breakers;
+    }
+
+    /**
+     * Set the health check, if any, that an endpoint must pass to be given a trial request.
+     *
+     * @param healthCheck The health check.
+     */
+    public void setHealthCheck(final EndpointHealthCheck healthCheck) {
+        this.healthCheck = healthCheck;
+    }
+
+    @Override
+    public URI select(final URI service, final List<Candidate> candidates) {
+        for (final Candidate candidate : candidates) {
+            if (isHealthy(candidate.endpoint()) && breakers.tryTrial(candidate.endpoint())) {
+                return candidate.endpoint();
+            }
+        }
+
+        final List<Candidate> closed = candidates.stream()
+                .filter(c -> breakers.isClosed(c.endpoint()))
+                .collect(Collectors.toList());
+
+        if (closed.isEmpty()) {
+            throw new ServiceUnavailableException("All endpoints of service " + service + " are unavailable",
+                    breakers.retryAfter(candidates.stream().map(Candidate::endpoint).collect(Collectors.toList())));
+        }
+
+        return delegate.select(service, closed.size() == candidates.size() ? candidates : closed);
+    }
+
+    private boolean isHealthy(final URI endpoint) {
+        return healthCheck == null || healthCheck.isHealthy(endpoint);
+    }
+}
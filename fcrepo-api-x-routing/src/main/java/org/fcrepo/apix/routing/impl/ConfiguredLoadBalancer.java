@@ -0,0 +1,103 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.routing.impl;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.fcrepo.apix.routing.EndpointStatistics;
+import org.fcrepo.apix.routing.LoadBalancer;
+
+/**
+ * Load balancer that applies a configured strategy per service.
+ * <p>
+ * Services use the default strategy, unless given one explicitly via {@link #setServiceStrategies(String)}.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class ConfiguredLoadBalancer implements LoadBalancer {
+
+    private EndpointStatistics stats = new EndpointStatistics();
+
+    private String defaultStrategy = LoadBalancers.LEAST_OUTSTANDING;
+
+    private Map<URI, String> serviceStrategies = new HashMap<>();
+
+    private final Map<URI, LoadBalancer> balancers = new ConcurrentHashMap<>();
+
+    /**
+     * Set the endpoint statistics used by adaptive strategies.
+     *
+     * @param stats Endpoint statistics.
+     */
+    public void setEndpointStatistics(final EndpointStatistics stats) {
+        this.stats = stats;
+        balancers.clear();
+    }
+
+    /**
+     * Set the strategy used for services without an explicit strategy.
+     *
+     * @param strategy Strategy name, one of {@link LoadBalancers#STRATEGIES}.
+     */
+    public void setDefaultStrategy(final String strategy) {
+        LoadBalancers.create(strategy, stats);
+        this.defaultStrategy = strategy;
+        balancers.clear();
+    }
+
+    /**
+     * Set strategies for individual services.
+     *
+     * @param spec Comma separated list of <code>serviceURI=strategy</code>. May be empty.
+     */
+    public void setServiceStrategies(final String spec) {
+        final Map<URI, String> strategies = new HashMap<>();
+
+        for (final String entry : spec.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+
+            final int split = entry.lastIndexOf('=');
+            if (split < 0) {
+                throw new IllegalArgumentException(String.format(
+                        "Service strategy must be of the form serviceURI=strategy, got '%s'", entry));
+            }
+
+            final String strategy = entry.substring(split + 1).trim();
+            LoadBalancers.create(strategy, stats);
+            strategies.put(URI.create(entry.substring(0, split).trim()), strategy);
+        }
+
+        this.serviceStrategies = strategies;
+        balancers.clear();
+    }
+
+    @Override
+    public URI select(final URI service, final List<Candidate> candidates) {
+        return balancers.computeIfAbsent(service, s -> LoadBalancers.create(
+                serviceStrategies.getOrDefault(s, defaultStrategy), stats))
+                .select(service, candidates);
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.routing.impl;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import javax.management.ObjectName;
+
+import org.fcrepo.apix.model.ServiceInstance;
+import org.fcrepo.apix.model.components.ServiceRegistry;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpOptions;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically probes all service instance endpoints with OPTIONS requests.
+ * <p>
+ * An endpoint is ejected (i.e. no longer {@link #isHealthy(URI) healthy}) after a number of consecutive failed
+ * probes, and re-admitted after a number of consecutive successful probes. A probe fails if the request cannot be
+ * performed within the timeout, or results in a 5xx response. Endpoints that have never been probed are considered
+ * healthy.
+ * </p>
+ * <p>
+ * Probe and ejection counts are exported over JMX as {@value #OBJECT_NAME}.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class EndpointHealthCheck implements EndpointHealthMXBean {
+
+    static final String OBJECT_NAME = "org.fcrepo.apix:type=EndpointHealth";
+
+    private static final Logger LOG = LoggerFactory.getLogger(EndpointHealthCheck.class);
+
+    private ServiceRegistry serviceRegistry;
+
+    private CloseableHttpClient client;
+
+    private long interval = 10000;
+
+    private int timeout = 2000;
+
+    private int failureThreshold = 2;
+
+    private int successThreshold = 2;
+
+    private int probeThreads = 4;
+
+    private final Map<URI, Health> health = new ConcurrentHashMap<>();
+
+    private final LongAdder probes = new LongAdder();
+
+    private final LongAdder probeFailures = new LongAdder();
+
+    private final LongAdder ejections = new LongAdder();
+
+    private final LongAdder readmissions = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+
+    private ExecutorService probeExecutor;
+
+    private ObjectName registeredAs;
+
+    /**
+     * Set the service registry.
+     *
+     * @param registry The registry.
+     */
+    public void setServiceRegistry(final ServiceRegistry registry) {
+        this.serviceRegistry = registry;
+    }
+
+    /**
+     * Set the http client used for probes.
+     *
+     * @param client the client.
+     */
+    public void setHttpClient(final CloseableHttpClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Set the time between rounds of probes.
+     *
+     * @param millis Interval in milliseconds. If zero or less, endpoints are not probed.
+     */
+    public void setInterval(final long millis) {
+        this.interval = millis;
+    }
+
+    /**
+     * Set the time a probe may take before it is considered failed.
+     *
+     * @param millis Timeout in milliseconds.
+     */
+    public void setTimeout(final int millis) {
+        this.timeout = millis;
+    }
+
+    /**
+     * Set the number of consecutive failed probes after which an endpoint is ejected.
+     *
+     * @param count Number of probes.
+     */
+    public void setFailureThreshold(final int count) {
+        this.failureThreshold = Math.max(1, count);
+    }
+
+    /**
+     * Set the number of consecutive successful probes after which an ejected endpoint is re-admitted.
+     *
+     * @param count Number of probes.
+     */
+    public void setSuccessThreshold(final int count) {
+        this.successThreshold = Math.max(1, count);
+    }
+
+    /**
+     * Set the maximum number of concurrent probes.
+     *
+     * @param threads Number of threads.
+     */
+    public void setProbeThreads(final int threads) {
+        this.probeThreads = Math.max(1, threads);
+    }
+
+    /** Start probing */
+    public void init() {
+        if (interval <= 0) {
+            LOG.info("Endpoint health checks are disabled");
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemon("apix-health-check"));
+        probeExecutor = Executors.newFixedThreadPool(probeThreads, daemon("apix-health-probe"));
+
+        scheduler.scheduleWithFixedDelay(this::probeAll, interval, interval, TimeUnit.MILLISECONDS);
+
+        try {
+            registeredAs = new ObjectName(OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, registeredAs);
+        } catch (final Exception e) {
+            LOG.warn("Could not register endpoint health metrics as {}", OBJECT_NAME, e);
+            registeredAs = null;
+        }
+    }
+
+    /** Stop probing */
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            probeExecutor.shutdownNow();
+        }
+
+        if (registeredAs != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+            } catch (final Exception e) {
+                LOG.debug("Could not unregister {}", registeredAs, e);
+            }
+        }
+    }
+
+    /**
+     * Determine whether an endpoint may be selected.
+     *
+     * @param endpoint Endpoint URI
+     * @return false if the endpoint has been ejected.
+     */
+    public boolean isHealthy(final URI endpoint) {
+        final Health h = health.get(endpoint);
+        return h == null || h.healthy;
+    }
+
+    /** Probe every endpoint of every service instance, once */
+    void probeAll() {
+        try {
+            final Set<URI> endpoints = endpoints();
+            health.keySet().retainAll(endpoints);
+
+            final List<Future<?>> inProgress = new ArrayList<>();
+            for (final URI endpoint : endpoints) {
+                inProgress.add(probeExecutor.submit(() -> probe(endpoint)));
+            }
+
+            // Wait for this round to finish, so that rounds do not overlap
+            for (final Future<?> probe : inProgress) {
+                probe.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final Exception e) {
+            LOG.warn("Error probing service instance endpoints", e);
+        }
+    }
+
+    private Set<URI> endpoints() {
+        final Set<URI> endpoints = new HashSet<>();
+
+        for (final URI service : serviceRegistry.list()) {
+            try {
+                for (final ServiceInstance instance : serviceRegistry.instancesOf(service).instances()) {
+                    endpoints.addAll(instance.endpoints());
+                }
+            } catch (final Exception e) {
+                LOG.debug("Could not get instances of service <{}>: {}", service, e.getMessage());
+            }
+        }
+
+        return endpoints;
+    }
+
+    void probe(final URI endpoint) {
+        final HttpOptions options = new HttpOptions(endpoint);
+        options.setConfig(RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .build());
+
+        boolean ok;
+        try (CloseableHttpResponse resp = client.execute(options)) {
+            ok = resp.getStatusLine().getStatusCode() < 500;
+            EntityUtils.consumeQuietly(resp.getEntity());
+            if (!ok) {
+                LOG.debug("Probe of <{}> returned {}", endpoint, resp.getStatusLine());
+            }
+        } catch (final Exception e) {
+            LOG.debug("Probe of <{}> failed: {}", endpoint, e.getMessage());
+            ok = false;
+        }
+
+        record(endpoint, ok);
+    }
+
+    void record(final URI endpoint, final boolean ok) {
+        probes.increment();
+        if (!ok) {
+            probeFailures.increment();
+        }
+
+        health.computeIfAbsent(endpoint, Health::new).record(ok);
+    }
+
+    @Override
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    @Override
+    public long getProbeFailures() {
+        return probeFailures.sum();
+    }
+
+    @Override
+    public long getEjections() {
+        return ejections.sum();
+    }
+
+    @Override
+    public long getReadmissions() {
+        return readmissions.sum();
+    }
+
+    @Override
+    public int getHealthyEndpointCount() {
+        return (int) health.values().stream().filter(h -> h.healthy).count();
+    }
+
+    @Override
+    public List<String> getEjectedEndpoints() {
+        return health.values().stream()
+                .filter(h -> !h.healthy)
+                .map(h -> h.endpoint.toString())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private class Health {
+
+        final URI endpoint;
+
+        volatile boolean healthy = true;
+
+        int consecutiveFailures;
+
+        int consecutiveSuccesses;
+
+        Health(final URI endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        synchronized void record(final boolean ok) {
+            if (ok) {
+                consecutiveFailures = 0;
+                consecutiveSuccesses++;
+
+                if (!healthy && consecutiveSuccesses >= successThreshold) {
+                    healthy = true;
+                    readmissions.increment();
+                    LOG.info("Re-admitting endpoint <{}> after {} successful probes", endpoint,
+                            consecutiveSuccesses);
+                }
+            } else {
+                consecutiveSuccesses = 0;
+                consecutiveFailures++;
+
+                if (healthy && consecutiveFailures >= failureThreshold) {
+                    healthy = false;
+                    ejections.increment();
+                    LOG.warn("Ejecting endpoint <{}> after {} failed probes", endpoint, consecutiveFailures);
+                }
+            }
+        }
+    }
+
+    private static ThreadFactory daemon(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return r -> {
+            final Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
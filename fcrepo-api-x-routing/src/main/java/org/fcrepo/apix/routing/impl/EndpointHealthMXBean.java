@@ -0,0 +1,71 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.routing.impl;
+
+import java.util.List;
+
+/**
+ * Health check metrics, as exported over JMX.
+ *
+ * @author apb@jhu.edu
+ */
+public interface EndpointHealthMXBean {
+
+    /**
+     * Total number of probes performed.
+     *
+     * @return number of probes.
+     */
+    long getProbes();
+
+    /**
+     * Total number of probes that failed.
+     *
+     * @return number of failed probes.
+     */
+    long getProbeFailures();
+
+    /**
+     * Number of times an endpoint has been ejected from selection.
+     *
+     * @return number of ejections.
+     */
+    long getEjections();
+
+    /**
+     * Number of times an ejected endpoint has been re-admitted for selection.
+     *
+     * @return number of re-admissions.
+     */
+    long getReadmissions();
+
+    /**
+     * Number of known endpoints that are currently selectable.
+     *
+     * @return number of healthy endpoints.
+     */
+    int getHealthyEndpointCount();
+
+    /**
+     * Endpoints that are currently ejected.
+     *
+     * @return endpoint URIs.
+     */
+    List<String> getEjectedEndpoints();
+}
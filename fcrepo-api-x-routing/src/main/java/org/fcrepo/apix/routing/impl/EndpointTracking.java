@@ -0,0 +1,96 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.routing.impl;
+
+import java.net.URI;
+
+import org.fcrepo.apix.routing.EndpointStatistics;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+
+/**
+ * Processors that record calls to service instance endpoints in {@link EndpointStatistics}.
+ * <p>
+ * {@link #start()} is placed before the http producer invoking a service instance, and {@link #complete()} in a
+ * <code>doFinally</code> block after it, so that failed requests are recorded too.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+class EndpointTracking {
+
+    static final String PROP_ENDPOINT_CALL = "CamelApixEndpointCall";
+
+    // Exception caught earlier in the exchange, if any, which should not count against the endpoint
+    static final String PROP_PRIOR_EXCEPTION = "CamelApixPriorException";
+
+    private final EndpointStatistics stats;
+
+    EndpointTracking(final EndpointStatistics stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Record the start of a call to the endpoint in the {@link Exchange#HTTP_URI} header.
+     *
+     * @return the processor.
+     */
+    Processor start() {
+        return ex -> {
+            final String endpoint = ex.getIn().getHeader(Exchange.HTTP_URI, String.class);
+            if (endpoint != null) {
+                ex.setProperty(PROP_PRIOR_EXCEPTION, ex.getProperty(Exchange.EXCEPTION_CAUGHT));
+                ex.setProperty(PROP_ENDPOINT_CALL, stats.start(URI.create(endpoint)));
+            }
+        };
+    }
+
+    /**
+     * Record completion of the call started by {@link #start()}.
+     * <p>
+     * The call is considered failed if it resulted in an exception or a 5xx response.
+     * </p>
+     *
+     * @return the processor.
+     */
+    Processor complete() {
+        return ex -> {
+            final EndpointStatistics.Call call = ex.getProperty(PROP_ENDPOINT_CALL, EndpointStatistics.Call.class);
+
+            if (call != null) {
+                final boolean failed = failed(ex);
+                ex.removeProperty(PROP_ENDPOINT_CALL);
+                ex.removeProperty(PROP_PRIOR_EXCEPTION);
+                call.complete(failed);
+            }
+        };
+    }
+
+    static boolean failed(final Exchange ex) {
+        // Within doFinally, the exception is moved from the exchange to the EXCEPTION_CAUGHT property
+        final Object caught = ex.getProperty(Exchange.EXCEPTION_CAUGHT);
+        if (ex.getException() != null || (caught != null && caught != ex.getProperty(PROP_PRIOR_EXCEPTION))) {
+            return true;
+        }
+
+        final Integer status = ex.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+        return status == null || status >= 500;
+    }
+}
@@ -126,7 +126,7 @@ public class ExposedServiceUriAnalyzer implements Updateable {
 
     @Override
     public void update() {
-        final Map<String, Extension> exts = extensions.list().stream()
+        final Map<String, Extension> exts = extensions.stream()
                 .map(extensions::getExtension)
                 .filter(Extension::isExposing)
                 .filter(e -> e.exposed().scope() != Scope.EXTERNAL)
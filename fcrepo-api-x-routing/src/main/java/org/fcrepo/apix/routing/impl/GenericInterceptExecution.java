@@ -40,6 +40,9 @@ import org.fcrepo.apix.model.components.ExtensionBinding;
 import org.fcrepo.apix.model.components.ExtensionRegistry;
 import org.fcrepo.apix.model.components.ServiceRegistry;
 import org.fcrepo.apix.model.components.Updateable;
+import org.fcrepo.apix.routing.EndpointStatistics;
+import org.fcrepo.apix.routing.LoadBalancer;
+import org.fcrepo.apix.routing.ServiceUnavailableException;
 
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
@@ -85,6 +88,10 @@ public class GenericInterceptExecution extends RouteBuilder implements Updateabl
 
     private URI proxyURI;
 
+    private LoadBalancer loadBalancer = new ConfiguredLoadBalancer();
+
+    private EndpointTracking tracking = new EndpointTracking(new EndpointStatistics());
+
     /**
      * Set the extension binding.
      *
@@ -112,6 +119,24 @@ public class GenericInterceptExecution extends RouteBuilder implements Updateabl
         this.serviceRegistry = registry;
     }
 
+    /**
+     * Set the load balancer for selecting service instance endpoints.
+     *
+     * @param balancer The load balancer.
+     */
+    public void setLoadBalancer(final LoadBalancer balancer) {
+        this.loadBalancer = balancer;
+    }
+
+    /**
+     * Set the statistics to record calls to service instance endpoints in.
+     *
+     * @param stats Endpoint statistics.
+     */
+    public void setEndpointStatistics(final EndpointStatistics stats) {
+        this.tracking = new EndpointTracking(stats);
+    }
+
     /**
      * Set Fedora's baseURI.
      *
@@ -125,7 +150,7 @@ public class GenericInterceptExecution extends RouteBuilder implements Updateabl
 
     @Override
     public void update() {
-        final List<Extension> found = extensionRegistry.list().stream()
+        final List<Extension> found = extensionRegistry.stream()
                 .map(extensionRegistry::getExtension)
                 .filter(Extension::isIntercepting)
                 .collect(Collectors.toList());
@@ -146,9 +171,10 @@ public class GenericInterceptExecution extends RouteBuilder implements Updateabl
     @Override
     public void configure() throws Exception {
 
-        from(ROUTE_INTERCEPT_INCOMING).id("intercept-incoming").process(GET_ENDPOINTS)
+        from(ROUTE_INTERCEPT_INCOMING).id("intercept-incoming")
                 .setHeader(HTTP_HEADER_MODALITY).constant(MODALITY_INTERCEPT_INCOMING)
                 .setHeader(Exchange.HTTP_RESPONSE_CODE).constant(200)
+                .process(GET_ENDPOINTS)
                 .to(ROUTE_PERFORM_INCOMING);
 
         from(ROUTE_PERFORM_INCOMING)
@@ -178,20 +204,34 @@ public class GenericInterceptExecution extends RouteBuilder implements Updateabl
                 .process(e -> e.getIn().setHeader(
                         Exchange.HTTP_URI,
                         e.getIn().getHeader(HEADER_SERVICE_ENDPOINTS, Queue.class).remove()))
+                .process(tracking.start())
+                .doTry()
                 .to("http://localhost?throwExceptionOnFailure=false" +
                         "&disableStreamCache=true" +
-                        "&preserveHostHeader=true");
+                        "&preserveHostHeader=true")
+                .doFinally().process(tracking.complete()).end();
     }
 
     final Processor GET_ENDPOINTS = (ex -> {
         final URI fedoraResource = append(proxyURI, ex.getIn().getHeader(Exchange.HTTP_PATH));
 
         if (extensions.size() > 0) {
-            final List<URI> exts =
-                    binding.getExtensionsFor(fedoraResource, extensions)
-                            .stream()
-                            .map(e -> interceptingServiceInstance(e, serviceRegistry))
-                            .collect(Collectors.toList());
+            final List<URI> exts;
+            try {
+                exts = binding.getExtensionsFor(fedoraResource, extensions)
+                        .stream()
+                        .map(e -> interceptingServiceInstance(e, serviceRegistry, loadBalancer))
+                        .collect(Collectors.toList());
+            } catch (final ServiceUnavailableException e) {
+                // Fail fast rather than waiting on an endpoint that is known to be failing
+                LOG.warn("Cannot intercept request to {}: {}", fedoraResource, e.getMessage());
+                ex.getIn().removeHeaders("*");
+                ex.getIn().setHeader(HEADER_SERVICE_ENDPOINTS, new LinkedList<>());
+                ex.getIn().setHeader(Exchange.HTTP_RESPONSE_CODE, 503);
+                ex.getIn().setHeader("Retry-After", e.retryAfter());
+                ex.getIn().setBody(e.getMessage());
+                return;
+            }
 
             ex.getIn().setHeader(HEADER_SERVICE_ENDPOINTS, new LinkedList<>(exts));
             ex.getIn().setHeader(HEADER_SERVICE_ENDPOINTS_OUTGOING, new LinkedList<>(exts));
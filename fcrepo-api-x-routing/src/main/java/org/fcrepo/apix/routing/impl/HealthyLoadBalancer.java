@@ -0,0 +1,78 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.routing.impl;
+
+import java.net.URI;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.fcrepo.apix.routing.LoadBalancer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Load balancer that only selects among endpoints that pass health checks.
+ * <p>
+ * If every endpoint of a service has been ejected, selection falls back to all endpoints rather than failing the
+ * request outright.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class HealthyLoadBalancer implements LoadBalancer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HealthyLoadBalancer.class);
+
+    private LoadBalancer delegate;
+
+    private EndpointHealthCheck healthCheck;
+
+    /**
+     * Set the load balancer that selects among healthy endpoints.
+     *
+     * @param delegate Underlying load balancer.
+     */
+    public void setDelegate(final LoadBalancer delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Set the health check.
+     *
+     * @param healthCheck The health check.
+     */
+    public void setHealthCheck(final EndpointHealthCheck healthCheck) {
+        this.healthCheck = healthCheck;
+    }
+
+    @Override
+    public URI select(final URI service, final List<Candidate> candidates) {
+        final List<Candidate> healthy = candidates.stream()
+                .filter(c -> healthCheck.isHealthy(c.endpoint()))
+                .collect(Collectors.toList());
+
+        if (healthy.isEmpty()) {
+            LOG.debug("All endpoints of <{}> are ejected, selecting among all of them", service);
+            return delegate.select(service, candidates);
+        }
+
+        return delegate.select(service, healthy.size() == candidates.size() ? candidates : healthy);
+    }
+}
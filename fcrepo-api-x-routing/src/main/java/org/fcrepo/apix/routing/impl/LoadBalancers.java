@@ -0,0 +1,155 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.routing.impl;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fcrepo.apix.routing.EndpointStatistics;
+import org.fcrepo.apix.routing.LoadBalancer;
+
+/**
+ * Built-in load balancing strategies.
+ *
+ * @author apb@jhu.edu
+ */
+public abstract class LoadBalancers {
+
+    /** Uniform random selection */
+    public static final String RANDOM = "random";
+
+    /** Each endpoint in turn */
+    public static final String ROUND_ROBIN = "round-robin";
+
+    /** Random selection, proportional to instance weight */
+    public static final String WEIGHTED = "weighted";
+
+    /** Endpoint with the fewest outstanding requests */
+    public static final String LEAST_OUTSTANDING = "least-outstanding";
+
+    /** Better of two random endpoints, by latency and outstanding requests */
+    public static final String EWMA = "ewma";
+
+    /** Names of all built-in strategies */
+    public static final List<String> STRATEGIES = Arrays.asList(RANDOM, ROUND_ROBIN, WEIGHTED, LEAST_OUTSTANDING,
+            EWMA);
+
+    /**
+     * Create a new load balancer implementing the named strategy.
+     * <p>
+     * Load balancers may be stateful, so a balancer should be created for each service.
+     * </p>
+     *
+     * @param strategy Strategy name, one of {@link #STRATEGIES}.
+     * @param stats Endpoint statistics, for adaptive strategies.
+     * @return The load balancer.
+     */
+    public static LoadBalancer create(final String strategy, final EndpointStatistics stats) {
+        switch (strategy) {
+        case RANDOM:
+            return (service, candidates) -> candidates.get(random(candidates.size())).endpoint();
+        case ROUND_ROBIN:
+            return new RoundRobin();
+        case WEIGHTED:
+            return LoadBalancers::weighted;
+        case LEAST_OUTSTANDING:
+            return (service, candidates) -> leastOutstanding(candidates, stats);
+        case EWMA:
+            return (service, candidates) -> powerOfTwo(candidates, stats);
+        default:
+            throw new IllegalArgumentException(String.format("Unknown load balancing strategy '%s', expected one of %s",
+                    strategy, STRATEGIES));
+        }
+    }
+
+    private static class RoundRobin implements LoadBalancer {
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        @Override
+        public URI select(final URI service, final List<LoadBalancer.Candidate> candidates) {
+            return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size())).endpoint();
+        }
+    }
+
+    // Instances with weight 0 are only selected if all instances have weight 0
+    static URI weighted(final URI service, final List<LoadBalancer.Candidate> candidates) {
+        final int total = candidates.stream().mapToInt(LoadBalancer.Candidate::weight).sum();
+
+        if (total <= 0) {
+            return candidates.get(random(candidates.size())).endpoint();
+        }
+
+        int point = random(total);
+        for (final LoadBalancer.Candidate candidate : candidates) {
+            point -= candidate.weight();
+            if (point < 0) {
+                return candidate.endpoint();
+            }
+        }
+
+        throw new IllegalStateException("Should never happen");
+    }
+
+    // Ties are broken by starting at a random position
+    static URI leastOutstanding(final List<LoadBalancer.Candidate> candidates, final EndpointStatistics stats) {
+        final int offset = random(candidates.size());
+
+        URI selected = null;
+        int fewest = Integer.MAX_VALUE;
+
+        for (int i = 0; i < candidates.size(); i++) {
+            final URI endpoint = candidates.get((offset + i) % candidates.size()).endpoint();
+            final int inFlight = stats.of(endpoint).inFlight();
+            if (inFlight < fewest) {
+                fewest = inFlight;
+                selected = endpoint;
+            }
+        }
+
+        return selected;
+    }
+
+    // Pick two distinct endpoints at random, and use the one with the lower expected cost
+    static URI powerOfTwo(final List<LoadBalancer.Candidate> candidates, final EndpointStatistics stats) {
+        if (candidates.size() == 1) {
+            return candidates.get(0).endpoint();
+        }
+
+        final int a = random(candidates.size());
+        final int b = (a + 1 + random(candidates.size() - 1)) % candidates.size();
+
+        final URI first = candidates.get(a).endpoint();
+        final URI second = candidates.get(b).endpoint();
+
+        return cost(stats.of(first)) <= cost(stats.of(second)) ? first : second;
+    }
+
+    // Endpoints without latency data cost nothing, so that they are tried
+    private static double cost(final EndpointStatistics.Stats stats) {
+        return Math.max(stats.latency(), 0) * (stats.inFlight() + 1);
+    }
+
+    private static int random(final int bound) {
+        return ThreadLocalRandom.current().nextInt(bound);
+    }
+}
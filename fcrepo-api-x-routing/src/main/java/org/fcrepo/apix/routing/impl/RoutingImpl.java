@@ -27,25 +27,25 @@ import static org.fcrepo.apix.model.components.Routing.HTTP_HEADER_REPOSITORY_RE
 import static org.fcrepo.apix.model.components.Routing.HTTP_HEADER_REPOSITORY_ROOT_URI;
 import static org.fcrepo.apix.routing.Util.append;
 import static org.fcrepo.apix.routing.Util.segment;
+import static org.fcrepo.apix.routing.Util.serviceInstance;
 import static org.fcrepo.apix.routing.impl.GenericInterceptExecution.ROUTE_INTERCEPT_INCOMING;
 import static org.fcrepo.apix.routing.impl.GenericInterceptExecution.ROUTE_INTERCEPT_OUTGOING;
 
 import java.net.URI;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Random;
 import java.util.Set;
 
 import org.fcrepo.apix.model.Extension;
 import org.fcrepo.apix.model.Extension.Scope;
-import org.fcrepo.apix.model.ServiceInstance;
 import org.fcrepo.apix.model.WebResource;
 import org.fcrepo.apix.model.components.ResourceNotFoundException;
 import org.fcrepo.apix.model.components.RoutingFactory;
 import org.fcrepo.apix.model.components.ServiceDiscovery;
-import org.fcrepo.apix.model.components.ServiceInstanceRegistry;
 import org.fcrepo.apix.model.components.ServiceRegistry;
+import org.fcrepo.apix.routing.EndpointStatistics;
+import org.fcrepo.apix.routing.LoadBalancer;
+import org.fcrepo.apix.routing.ServiceUnavailableException;
 import org.fcrepo.apix.routing.impl.ExposedServiceUriAnalyzer.ServiceExposingBinding;
 
 import org.apache.camel.Exchange;
@@ -66,8 +66,6 @@ public class RoutingImpl extends RouteBuilder {
 
     static final Logger LOG = LoggerFactory.getLogger(RoutingImpl.class);
 
-    private final Random random = new Random();
-
     private URI fcrepoBaseURI;
 
     public static final String EXECUTION_EXPOSE_MODALITY = "direct:execute_expose";
@@ -82,6 +80,10 @@ public class RoutingImpl extends RouteBuilder {
 
     public static final String ROUTE_INSTANCE_NOT_FOUND = "direct:instance_not_found";
 
+    public static final String ROUTE_SERVICE_UNAVAILABLE = "direct:service_unavailable";
+
+    public static final String PROP_RETRY_AFTER = "CamelApixRetryAfter";
+
     public static final String ROUTE_INTERCEPT = "direct:intercept";
 
     public static final String ROUTE_TO_FEDORA = "direct:fcrepo";
@@ -102,6 +104,10 @@ public class RoutingImpl extends RouteBuilder {
 
     private String proxyPath;
 
+    private LoadBalancer loadBalancer = new ConfiguredLoadBalancer();
+
+    private EndpointTracking tracking = new EndpointTracking(new EndpointStatistics());
+
     /**
      * Set Fedora's baseURI.
      *
@@ -129,6 +135,24 @@ public class RoutingImpl extends RouteBuilder {
         this.serviceRegistry = registry;
     }
 
+    /**
+     * Set the load balancer for selecting service instance endpoints.
+     *
+     * @param balancer The load balancer.
+     */
+    public void setLoadBalancer(final LoadBalancer balancer) {
+        this.loadBalancer = balancer;
+    }
+
+    /**
+     * Set the statistics to record calls to service instance endpoints in.
+     *
+     * @param stats Endpoint statistics.
+     */
+    public void setEndpointStatistics(final EndpointStatistics stats) {
+        this.tracking = new EndpointTracking(stats);
+    }
+
     /**
      * Set the URI analyzer.
      *
@@ -242,17 +266,30 @@ public class RoutingImpl extends RouteBuilder {
                 .setHeader(Exchange.HTTP_RESPONSE_CODE, constant(404))
                 .setBody(simple("${exchangeProperty." + PROP_MESSAGE + "}"));
 
+        from(ROUTE_SERVICE_UNAVAILABLE).id("unavailable-service")
+                .routeDescription("No service instance endpoints available")
+                .removeHeaders("*")
+                .setHeader(Exchange.HTTP_RESPONSE_CODE, constant(503))
+                .setHeader("Retry-After", exchangeProperty(PROP_RETRY_AFTER))
+                .setBody(simple("${exchangeProperty." + PROP_MESSAGE + "}"));
+
         from(EXECUTION_EXPOSE_MODALITY)
                 .routeId("apix-proxy-service-endpoint")
                 .routeDescription("Proxies an exposed service to a service instance")
                 .process(SELECT_SERVICE_INSTANCE)
                 .setHeader(Exchange.HTTP_PATH).simple("${in.header." + BINDING + ".additionalPath}")
                 .setHeader(Exchange.HTTP_URI).header(SERVICE_INSTANCE_URI)
-                .choice().when(header(SERVICE_INSTANCE_URI).isNull()).to(ROUTE_INSTANCE_NOT_FOUND)
-                .otherwise().to("http://localhost" +
+                .choice()
+                .when(exchangeProperty(PROP_RETRY_AFTER).isNotNull()).to(ROUTE_SERVICE_UNAVAILABLE)
+                .when(header(SERVICE_INSTANCE_URI).isNull()).to(ROUTE_INSTANCE_NOT_FOUND)
+                .otherwise()
+                .process(tracking.start())
+                .doTry()
+                .to("http://localhost" +
                         "?preserveHostHeader=true" +
                         "&disableStreamCache=true" +
-                        "&throwExceptionOnFailure=false");
+                        "&throwExceptionOnFailure=false")
+                .doFinally().process(tracking.complete()).end();
 
     }
 
@@ -310,22 +347,15 @@ public class RoutingImpl extends RouteBuilder {
                         extension.uri());
 
         try {
-            final ServiceInstanceRegistry instanceRegistry = serviceRegistry.instancesOf(serviceRegistry.getService(
-                    consumedServiceURI));
-
-            if (instanceRegistry == null) {
-                throw new ResourceNotFoundException("No instance registry for service " + consumedServiceURI);
-            }
-
-            final ServiceInstance instance = oneOf(instanceRegistry.instances(),
-                    "There must be at least one service instance for " + consumedServiceURI);
-
-            ex.getIn().setHeader(SERVICE_INSTANCE_URI, oneOf(
-                    instance.endpoints(),
-                    "There must be at least one endpoint for instances of " + consumedServiceURI));
+            ex.getIn().setHeader(SERVICE_INSTANCE_URI, serviceInstance(consumedServiceURI, serviceRegistry,
+                    loadBalancer));
         } catch (final ResourceNotFoundException e) {
             LOG.warn("No instances of service {}; {}", consumedServiceURI, e.getMessage());
             ex.setProperty(PROP_MESSAGE, e.getMessage());
+        } catch (final ServiceUnavailableException e) {
+            LOG.warn("No available instances of service {}; {}", consumedServiceURI, e.getMessage());
+            ex.setProperty(PROP_MESSAGE, e.getMessage());
+            ex.setProperty(PROP_RETRY_AFTER, e.retryAfter());
         }
 
     });
@@ -372,12 +402,4 @@ public class RoutingImpl extends RouteBuilder {
 
         return of.iterator().next();
     }
-
-    private <T> T oneOf(final List<T> of, final String errMsg) {
-        if (of.isEmpty()) {
-            throw new ResourceNotFoundException(errMsg);
-        }
-
-        return of.get(random.nextInt(of.size()));
-    }
 }
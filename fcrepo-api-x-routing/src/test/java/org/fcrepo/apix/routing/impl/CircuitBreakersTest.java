@@ -0,0 +1,207 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.routing.impl;
+
+import static org.fcrepo.apix.routing.impl.CircuitBreakers.State.CLOSED;
+import static org.fcrepo.apix.routing.impl.CircuitBreakers.State.HALF_OPEN;
+import static org.fcrepo.apix.routing.impl.CircuitBreakers.State.OPEN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.fcrepo.apix.routing.LoadBalancer.Candidate;
+import org.fcrepo.apix.routing.ServiceUnavailableException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class CircuitBreakersTest {
+
+    static final URI SERVICE = URI.create("http://example.org/service");
+
+    static final URI ENDPOINT_1 = URI.create("http://example.org/endpoints/1");
+
+    static final URI ENDPOINT_2 = URI.create("http://example.org/endpoints/2");
+
+    static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+    static final long SLOW = TimeUnit.MILLISECONDS.toNanos(5000);
+
+    final AtomicLong now = new AtomicLong(1000000);
+
+    final CircuitBreakers toTest = new CircuitBreakers();
+
+    final CircuitBreakingLoadBalancer balancer = new CircuitBreakingLoadBalancer();
+
+    @Before
+    public void setUp() {
+        toTest.clock = now::get;
+        toTest.setConsecutiveFailures(3);
+        toTest.setWindow(10);
+        toTest.setMinimumCalls(4);
+        toTest.setErrorRate(0.5);
+        toTest.setOpenDuration(30000);
+
+        balancer.setCircuitBreakers(toTest);
+        balancer.setDelegate(LoadBalancers.create(LoadBalancers.ROUND_ROBIN, null));
+    }
+
+    @Test
+    public void consecutiveFailuresTest() {
+        toTest.completed(ENDPOINT_1, FAST, true);
+        toTest.completed(ENDPOINT_1, FAST, true);
+        assertEquals(CLOSED, toTest.state(ENDPOINT_1));
+
+        toTest.completed(ENDPOINT_1, FAST, true);
+        assertEquals(OPEN, toTest.state(ENDPOINT_1));
+
+        // Open endpoints are skipped
+        for (int i = 0; i < 10; i++) {
+            assertEquals(ENDPOINT_2, balancer.select(SERVICE, candidates()));
+        }
+    }
+
+    @Test
+    public void errorRateTest() {
+        toTest.completed(ENDPOINT_1, FAST, true);
+        toTest.completed(ENDPOINT_1, FAST, false);
+        toTest.completed(ENDPOINT_1, FAST, true);
+        assertEquals(CLOSED, toTest.state(ENDPOINT_1));
+
+        toTest.completed(ENDPOINT_1, FAST, false);
+        assertEquals(OPEN, toTest.state(ENDPOINT_1));
+    }
+
+    @Test
+    public void latencyTest() {
+        toTest.setLatencyThreshold(1000);
+        toTest.setLatencyPercentile(0.5);
+
+        toTest.completed(ENDPOINT_1, FAST, false);
+        toTest.completed(ENDPOINT_1, SLOW, false);
+        toTest.completed(ENDPOINT_1, FAST, false);
+        toTest.completed(ENDPOINT_1, SLOW, false);
+        assertEquals(CLOSED, toTest.state(ENDPOINT_1));
+
+        toTest.completed(ENDPOINT_1, SLOW, false);
+        assertEquals(OPEN, toTest.state(ENDPOINT_1));
+    }
+
+    @Test
+    public void halfOpenTest() {
+        open(ENDPOINT_1);
+
+        now.addAndGet(29000);
+        assertFalse(toTest.tryTrial(ENDPOINT_1));
+
+        now.addAndGet(1000);
+        assertEquals(ENDPOINT_1, balancer.select(SERVICE, candidates()));
+        assertEquals(HALF_OPEN, toTest.state(ENDPOINT_1));
+
+        // Only one trial at a time
+        assertEquals(ENDPOINT_2, balancer.select(SERVICE, candidates()));
+
+        // Failed trial opens again
+        complete(ENDPOINT_1, FAST, true);
+        assertEquals(OPEN, toTest.state(ENDPOINT_1));
+
+        now.addAndGet(30000);
+        assertTrue(toTest.tryTrial(ENDPOINT_1));
+        complete(ENDPOINT_1, FAST, false);
+        assertEquals(CLOSED, toTest.state(ENDPOINT_1));
+    }
+
+    // Endpoints ejected by the health check are not given trials
+    @Test
+    public void unhealthyTrialTest() {
+        final EndpointHealthCheck healthCheck = new EndpointHealthCheck();
+        healthCheck.setFailureThreshold(1);
+        healthCheck.setSuccessThreshold(1);
+        balancer.setHealthCheck(healthCheck);
+
+        open(ENDPOINT_1);
+        healthCheck.record(ENDPOINT_1, false);
+        assertFalse(healthCheck.isHealthy(ENDPOINT_1));
+
+        now.addAndGet(30000);
+        assertEquals(ENDPOINT_2, balancer.select(SERVICE, candidates()));
+        assertEquals(OPEN, toTest.state(ENDPOINT_1));
+
+        healthCheck.record(ENDPOINT_1, true);
+        assertEquals(ENDPOINT_1, balancer.select(SERVICE, candidates()));
+        assertEquals(HALF_OPEN, toTest.state(ENDPOINT_1));
+    }
+
+    // Calls that started before a trial don't decide it
+    @Test
+    public void lateCompletionTest() {
+        open(ENDPOINT_1);
+
+        now.addAndGet(30000);
+        assertTrue(toTest.tryTrial(ENDPOINT_1));
+
+        // Completes now, having started while the breaker was still closed
+        toTest.completed(ENDPOINT_1, TimeUnit.SECONDS.toNanos(40), false);
+        assertEquals(HALF_OPEN, toTest.state(ENDPOINT_1));
+
+        complete(ENDPOINT_1, FAST, true);
+        assertEquals(OPEN, toTest.state(ENDPOINT_1));
+    }
+
+    @Test
+    public void allOpenTest() {
+        open(ENDPOINT_1);
+        now.addAndGet(10000);
+        open(ENDPOINT_2);
+
+        try {
+            balancer.select(SERVICE, candidates());
+            fail("Should have thrown an exception");
+        } catch (final ServiceUnavailableException e) {
+            assertEquals(20, e.retryAfter());
+        }
+    }
+
+    // Complete a call that took the given time, as of its completion
+    private void complete(final URI endpoint, final long elapsed, final boolean failed) {
+        now.addAndGet(TimeUnit.NANOSECONDS.toMillis(elapsed));
+        toTest.completed(endpoint, elapsed, failed);
+    }
+
+    private void open(final URI endpoint) {
+        for (int i = 0; i < 3; i++) {
+            toTest.completed(endpoint, FAST, true);
+        }
+        assertEquals(OPEN, toTest.state(endpoint));
+    }
+
+    private static List<Candidate> candidates() {
+        return Arrays.asList(new Candidate(ENDPOINT_1, 1), new Candidate(ENDPOINT_2, 1));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.routing.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+
+import org.fcrepo.apix.routing.LoadBalancer.Candidate;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicStatusLine;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class EndpointHealthCheckTest {
+
+    static final URI SERVICE = URI.create("http://example.org/service");
+
+    static final URI ENDPOINT_1 = URI.create("http://example.org/endpoints/1");
+
+    static final URI ENDPOINT_2 = URI.create("http://example.org/endpoints/2");
+
+    final EndpointHealthCheck toTest = new EndpointHealthCheck();
+
+    @Before
+    public void setUp() {
+        toTest.setFailureThreshold(2);
+        toTest.setSuccessThreshold(2);
+    }
+
+    @Test
+    public void ejectAndReadmitTest() {
+        assertTrue(toTest.isHealthy(ENDPOINT_1));
+
+        toTest.record(ENDPOINT_1, false);
+        assertTrue(toTest.isHealthy(ENDPOINT_1));
+
+        toTest.record(ENDPOINT_1, false);
+        assertFalse(toTest.isHealthy(ENDPOINT_1));
+        assertEquals(Arrays.asList(ENDPOINT_1.toString()), toTest.getEjectedEndpoints());
+
+        toTest.record(ENDPOINT_1, true);
+        assertFalse(toTest.isHealthy(ENDPOINT_1));
+
+        toTest.record(ENDPOINT_1, true);
+        assertTrue(toTest.isHealthy(ENDPOINT_1));
+
+        assertEquals(4, toTest.getProbes());
+        assertEquals(2, toTest.getProbeFailures());
+        assertEquals(1, toTest.getEjections());
+        assertEquals(1, toTest.getReadmissions());
+    }
+
+    // Server errors and connection failures fail a probe, other responses do not.
+    @Test
+    public void probeTest() throws Exception {
+        final CloseableHttpClient client = mock(CloseableHttpClient.class);
+        final CloseableHttpResponse notAllowed = mock(CloseableHttpResponse.class);
+        when(notAllowed.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 405, "No"));
+        final CloseableHttpResponse unavailable = mock(CloseableHttpResponse.class);
+        when(unavailable.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 503, "No"));
+
+        when(client.execute(any(HttpUriRequest.class)))
+                .thenReturn(notAllowed)
+                .thenReturn(unavailable)
+                .thenThrow(new IOException("Connection refused"));
+
+        toTest.setHttpClient(client);
+
+        toTest.probe(ENDPOINT_1);
+        assertEquals(0, toTest.getProbeFailures());
+
+        toTest.probe(ENDPOINT_1);
+        toTest.probe(ENDPOINT_1);
+        assertEquals(2, toTest.getProbeFailures());
+        assertFalse(toTest.isHealthy(ENDPOINT_1));
+    }
+
+    @Test
+    public void healthyLoadBalancerTest() {
+        final HealthyLoadBalancer balancer = new HealthyLoadBalancer();
+        balancer.setHealthCheck(toTest);
+        balancer.setDelegate(LoadBalancers.create(LoadBalancers.ROUND_ROBIN, null));
+
+        toTest.record(ENDPOINT_1, false);
+        toTest.record(ENDPOINT_1, false);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(ENDPOINT_2, balancer.select(SERVICE, Arrays.asList(
+                    new Candidate(ENDPOINT_1, 1), new Candidate(ENDPOINT_2, 1))));
+        }
+
+        // Falls back to all endpoints if all are ejected
+        assertEquals(ENDPOINT_1, balancer.select(SERVICE, Arrays.asList(new Candidate(ENDPOINT_1, 1))));
+    }
+}
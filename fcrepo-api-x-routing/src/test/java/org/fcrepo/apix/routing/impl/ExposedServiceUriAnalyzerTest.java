@@ -123,7 +123,7 @@ public class ExposedServiceUriAnalyzerTest {
         });
 
         extensionURIs.add(extension1URI);
-        when(extensisons.list()).thenReturn(extensionURIs);
+        when(extensisons.stream()).thenAnswer(i -> extensionURIs.stream());
 
         toTest.update();
     }
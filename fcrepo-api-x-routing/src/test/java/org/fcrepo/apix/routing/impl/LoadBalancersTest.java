@@ -0,0 +1,149 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.apix.routing.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.fcrepo.apix.routing.EndpointStatistics;
+import org.fcrepo.apix.routing.LoadBalancer;
+import org.fcrepo.apix.routing.LoadBalancer.Candidate;
+
+import org.junit.Test;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class LoadBalancersTest {
+
+    static final URI SERVICE = URI.create("http://example.org/service");
+
+    static final URI ENDPOINT_1 = URI.create("http://example.org/endpoints/1");
+
+    static final URI ENDPOINT_2 = URI.create("http://example.org/endpoints/2");
+
+    static final URI ENDPOINT_3 = URI.create("http://example.org/endpoints/3");
+
+    final EndpointStatistics stats = new EndpointStatistics();
+
+    @Test
+    public void roundRobinTest() {
+        final LoadBalancer toTest = LoadBalancers.create(LoadBalancers.ROUND_ROBIN, stats);
+        final List<Candidate> candidates = candidates(1, 1, 1);
+
+        final Set<URI> selected = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            selected.add(toTest.select(SERVICE, candidates));
+        }
+
+        assertEquals(new HashSet<>(Arrays.asList(ENDPOINT_1, ENDPOINT_2, ENDPOINT_3)), selected);
+        assertEquals(ENDPOINT_1, toTest.select(SERVICE, candidates));
+    }
+
+    // Instances with weight 0 are never selected
+    @Test
+    public void weightedTest() {
+        final LoadBalancer toTest = LoadBalancers.create(LoadBalancers.WEIGHTED, stats);
+        final List<Candidate> candidates = candidates(0, 5, 0);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(ENDPOINT_2, toTest.select(SERVICE, candidates));
+        }
+    }
+
+    @Test
+    public void leastOutstandingTest() {
+        final LoadBalancer toTest = LoadBalancers.create(LoadBalancers.LEAST_OUTSTANDING, stats);
+
+        stats.start(ENDPOINT_1);
+        stats.start(ENDPOINT_3);
+        final EndpointStatistics.Call call = stats.start(ENDPOINT_2);
+
+        assertEquals(3, stats.all().size());
+
+        // All equally loaded, any may be picked
+        assertTrue(Arrays.asList(ENDPOINT_1, ENDPOINT_2, ENDPOINT_3).contains(
+                toTest.select(SERVICE, candidates(1, 1, 1))));
+
+        call.complete(false);
+        call.complete(false);
+
+        assertEquals(0, stats.of(ENDPOINT_2).inFlight());
+        assertEquals(1, stats.of(ENDPOINT_2).requests());
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(ENDPOINT_2, toTest.select(SERVICE, candidates(1, 1, 1)));
+        }
+    }
+
+    @Test
+    public void ewmaTest() throws Exception {
+        final LoadBalancer toTest = LoadBalancers.create(LoadBalancers.EWMA, stats);
+
+        stats.start(ENDPOINT_1).complete(false);
+        final EndpointStatistics.Call slow = stats.start(ENDPOINT_2);
+        Thread.sleep(10);
+        slow.complete(true);
+
+        assertTrue(stats.of(ENDPOINT_2).latency() > stats.of(ENDPOINT_1).latency());
+        assertEquals(1, stats.of(ENDPOINT_2).failures());
+
+        // With two candidates, both are always compared
+        for (int i = 0; i < 100; i++) {
+            assertEquals(ENDPOINT_1, toTest.select(SERVICE, candidates(1, 1)));
+        }
+    }
+
+    @Test
+    public void perServiceStrategyTest() {
+        final URI OTHER_SERVICE = URI.create("http://example.org/other");
+
+        final ConfiguredLoadBalancer toTest = new ConfiguredLoadBalancer();
+        toTest.setEndpointStatistics(stats);
+        toTest.setDefaultStrategy(LoadBalancers.ROUND_ROBIN);
+        toTest.setServiceStrategies(OTHER_SERVICE + "=" + LoadBalancers.WEIGHTED);
+
+        assertEquals(ENDPOINT_1, toTest.select(SERVICE, candidates(0, 1)));
+        assertEquals(ENDPOINT_2, toTest.select(SERVICE, candidates(0, 1)));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(ENDPOINT_2, toTest.select(OTHER_SERVICE, candidates(0, 1)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownStrategyTest() {
+        new ConfiguredLoadBalancer().setServiceStrategies(SERVICE + "=fastest");
+    }
+
+    private static List<Candidate> candidates(final int... weights) {
+        final List<URI> endpoints = Arrays.asList(ENDPOINT_1, ENDPOINT_2, ENDPOINT_3);
+        final Candidate[] candidates = new Candidate[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            candidates[i] = new Candidate(endpoints.get(i), weights[i]);
+        }
+        return Arrays.asList(candidates);
+    }
+}